@@ -0,0 +1,170 @@
+package gif.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+
+import gif.lzw.Encoder;
+
+/*
+ *  deterministic generator for synthetic GIFs
+ *
+ *  the same spec always gives the same bytes, so benchmark results can be compared across
+ *  machines and commits without shipping sample files
+ *
+ *  images are diagonal color bands with a fraction of random pixels mixed in, which compresses
+ *  somewhere between flat fills and pure noise
+ *
+ *  java -cp bench/target/benchmarks.jar gif.bench.Corpus <directory> writes the standard set
+ */
+public class Corpus {
+  public record Spec(
+    String name,
+    int width,
+    int height,
+    int frameCount,
+    int minimumCodeSize,  // also the size of the global color table
+    boolean isInterlaced,
+    int noisePercent,
+    long seed
+  ) {}
+
+  public static final List<Spec> STANDARD = List.of(
+    new Spec("tiny",                  16,   16,  1, 2, false, 10, 1),
+    new Spec("small",                 64,   64,  1, 4, false, 10, 2),
+    new Spec("medium",               320,  240,  1, 8, false, 10, 3),
+    new Spec("noisy",                320,  240,  1, 8, false, 90, 4),
+    new Spec("interlaced",           320,  240,  1, 8, true,  10, 5),
+    new Spec("large",               1920, 1080,  1, 8, false, 10, 6),
+    new Spec("animated",             160,  120, 32, 6, false, 10, 7),
+    new Spec("animated-interlaced",  160,  120, 32, 6, true,  10, 8)
+  );
+
+  public static Spec spec(String name) {
+    return STANDARD.stream()
+      .filter(spec -> spec.name().equals(name))
+      .findFirst()
+      .orElseThrow(() -> new NoSuchElementException("no corpus spec named " + name));
+  }
+
+  public static byte[] generate(String name) {
+    return generate(spec(name));
+  }
+
+  public static byte[] generate(Spec spec) {
+    var random = new SplittableRandom(spec.seed());
+    var output = new ByteArrayOutputStream();
+
+    output.writeBytes("GIF89a".getBytes());
+    writeShort(output, spec.width());
+    writeShort(output, spec.height());
+    output.write(0x80 | (7 << 4) | (spec.minimumCodeSize() - 1));  // global color table, 8 bits per primary
+    output.write(0);  // background color index
+    output.write(0);  // pixel aspect ratio
+
+    var colorCount = 1 << spec.minimumCodeSize();
+    for (var i=0; i < colorCount; ++i) {
+      output.write(i * 255 / (colorCount - 1));
+      output.write(random.nextInt(256));
+      output.write(255 - i * 255 / (colorCount - 1));
+    }
+
+    if (spec.frameCount() > 1) {
+      output.write(0x21);  // application extension, loop forever
+      output.write(0xff);
+      output.write(11);
+      output.writeBytes("NETSCAPE2.0".getBytes());
+      output.writeBytes(new byte[] { 3, 1, 0, 0, 0 });
+    }
+
+    var encoder = new Encoder();
+    for (var frame=0; frame < spec.frameCount(); ++frame) {
+      // the first frame covers the screen, the rest are smaller rectangles moving across it
+      var width  = frame == 0 ? spec.width () : Math.max(1, spec.width () / 2);
+      var height = frame == 0 ? spec.height() : Math.max(1, spec.height() / 2);
+      var left = frame == 0 ? 0 : (frame * 7) % (spec.width () - width  + 1);
+      var top  = frame == 0 ? 0 : (frame * 5) % (spec.height() - height + 1);
+
+      output.write(0x21);  // graphic control extension
+      output.write(0xf9);
+      output.write(4);
+      output.write((1 << 2) | 1);  // leave the frame in place, transparent color index present
+      writeShort(output, 10);
+      output.write(colorCount - 1);
+      output.write(0);
+
+      output.write(0x2c);
+      writeShort(output, left);
+      writeShort(output, top);
+      writeShort(output, width);
+      writeShort(output, height);
+      output.write(spec.isInterlaced() ? 0x40 : 0);
+
+      var indices = pixels(random, spec, frame, width, height);
+      if (spec.isInterlaced())
+        indices = interlace(indices, width, height);
+
+      output.write(spec.minimumCodeSize());
+      encoder.encode(indices, spec.minimumCodeSize()).writeTo(output);  // indices are always in range
+    }
+
+    output.write(0x3b);
+
+    return output.toByteArray();
+  }
+
+  private static byte[] pixels(SplittableRandom random, Spec spec, int frame, int width, int height) {
+    var colorCount = 1 << spec.minimumCodeSize();
+    var bandWidth = 1 + random.nextInt(8);
+
+    var pixels = new byte[width * height];
+    for (var y=0; y < height; ++y) {
+      for (var x=0; x < width; ++x) {
+        var value = random.nextInt(100) < spec.noisePercent()
+          ? random.nextInt(colorCount)
+          : ((x + y + frame) / bandWidth) % colorCount;
+
+        pixels[y * width + x] = (byte)value;
+      }
+    }
+
+    return pixels;
+  }
+
+  // reorders rows from display order to the order interlaced images store them in
+  private static byte[] interlace(byte[] pixels, int width, int height) {
+    var result = new byte[pixels.length];
+
+    var row = 0;
+    int[][] passes = { { 0, 8 }, { 4, 8 }, { 2, 4 }, { 1, 2 } };
+    for (var pass : passes)
+      for (var y=pass[0]; y < height; y += pass[1])
+        System.arraycopy(pixels, y * width, result, row++ * width, width);
+
+    return result;
+  }
+
+  private static void writeShort(ByteArrayOutputStream output, int value) {
+    output.write(value & 0xff);
+    output.write(value >>> 8);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("usage: Corpus <output directory>");
+      System.exit(2);
+    }
+
+    var directory = Files.createDirectories(Path.of(args[0]));
+    for (var spec : STANDARD) {
+      var bytes = generate(spec);
+      Files.write(directory.resolve(spec.name() + ".gif"), bytes);
+
+      System.out.println(spec.name() + ".gif " + bytes.length);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package gif.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gif.Gif;
+import gif.block.LabeledBlock;
+import gif.data.Pixel;
+import gif.data.exception.ParseException;
+import gif.lzw.BitStream;
+import gif.lzw.Decoder;
+import gif.lzw.Lzw;
+
+// decoding the image data of the first frame, from reading codes up to building pixels
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LzwBenchmark {
+  @Param({ "small", "medium", "noisy", "interlaced", "large" })
+  public String corpus;
+
+  private Gif gif;
+  private LabeledBlock.Image image;
+  private int codeCount;  // as many codes of the initial size as the data holds
+
+  private final Decoder decoder = new Decoder();
+  private byte[] indices;
+
+  @Setup
+  public void setup() throws IOException, ParseException {
+    gif = new Gif(new ByteArrayInputStream(Corpus.generate(corpus)));
+    image = Arrays.stream(gif.blocks)
+      .filter(LabeledBlock.Image.class::isInstance)
+      .map(LabeledBlock.Image.class::cast)
+      .findFirst()
+      .orElseThrow();
+
+    codeCount = image.data().totalSize() * Byte.SIZE / (image.minimumCodeSize() + 1);
+    indices = new byte[image.width().intValue() * image.height().intValue()];
+  }
+
+  @Benchmark
+  public int bitStreamRead() throws ParseException {
+    var stream = new BitStream(image.data());
+    var codeSize = image.minimumCodeSize() + 1;
+
+    var sum = 0;
+    for (var i=0; i < codeCount; ++i)
+      sum += stream.read(codeSize);
+
+    return sum;
+  }
+
+  @Benchmark
+  public List<Integer> lzwDecode() throws ParseException {
+    return Lzw.decode(new BitStream(image.data()), image.minimumCodeSize());
+  }
+
+  @Benchmark
+  public int decoderDecode() throws ParseException {
+    return decoder.decode(new BitStream(image.data()), image.minimumCodeSize());
+  }
+
+  @Benchmark
+  public byte[] decodeIndices() throws ParseException {
+    image.decodeIndices(decoder, indices, 0, image.width().intValue());
+
+    return indices;
+  }
+
+  @Benchmark
+  public Pixel[][] getPixels() throws ParseException {
+    return image.getPixels(gif.screen.globalColorTable());
+  }
+}
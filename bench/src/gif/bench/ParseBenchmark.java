@@ -0,0 +1,92 @@
+package gif.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gif.Gif;
+import gif.data.ByteBufferInputStream;
+import gif.data.exception.ParseException;
+
+// parsing whole files and writing them back out
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+  @Param({ "tiny", "medium", "large", "animated" })
+  public String corpus;
+
+  private byte[] bytes;
+  private Gif gif;
+  private FileChannel channel;
+
+  @Setup
+  public void setup() throws IOException, ParseException {
+    bytes = Corpus.generate(corpus);
+    gif = new Gif(new ByteArrayInputStream(bytes));
+
+    var path = Files.createTempFile("bench", ".gif");
+    channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    channel.close();
+  }
+
+  @Benchmark
+  public Gif parseStream() throws IOException, ParseException {
+    return new Gif(new ByteArrayInputStream(bytes));
+  }
+
+  // same as parsing a mapped file, data blocks are slices instead of copies
+  @Benchmark
+  public Gif parseBuffer() throws IOException, ParseException {
+    return new Gif(new ByteBufferInputStream(ByteBuffer.wrap(bytes)));
+  }
+
+  @Benchmark
+  public byte[] write() throws IOException {
+    var output = new ByteArrayOutputStream(bytes.length);
+    gif.writeTo(output);
+
+    return output.toByteArray();
+  }
+
+  @Benchmark
+  public long writeChannel() throws IOException {
+    channel.position(0);
+    gif.writeTo(channel);
+
+    return channel.position();
+  }
+
+  @Benchmark
+  public Gif roundTrip() throws IOException, ParseException {
+    var output = new ByteArrayOutputStream(bytes.length);
+    new Gif(new ByteArrayInputStream(bytes)).writeTo(output);
+
+    return new Gif(new ByteArrayInputStream(output.toByteArray()));
+  }
+}
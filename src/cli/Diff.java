@@ -0,0 +1,65 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import gif.Gif;
+import gif.GifDiff;
+import gif.data.ParseOptions;
+import gif.data.exception.ParseException;
+
+/*
+ *  prints what differs between two files, a line per changed field or block:
+ *    screen: width 10 -> 12
+ *    changed image 3 -> 3: delayTime 10 -> 20
+ *    added extension 0xff -> 5
+ *  then whether the frames themselves differ or only the metadata around them does
+ *
+ *  exits with 0 if the files are the same block for block, 1 if they aren't and 2 on errors, like diff
+ */
+public class Diff {
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2)
+      usage();
+
+    GifDiff diff;
+    try {
+      diff = new GifDiff(Gif.open(Path.of(args[0]), ParseOptions.TRUSTED), Gif.open(Path.of(args[1]), ParseOptions.TRUSTED));
+    } catch (ParseException e) {
+      System.err.println(e.getMessage());
+      System.exit(2);
+      return;
+    }
+
+    for (var change : diff.screenChanges())
+      System.out.printf("screen: %s %s -> %s%n", change.field(), change.before(), change.after());
+
+    for (var change : diff.blockChanges()) {
+      switch (change.kind()) {
+        case ADDED   -> System.out.printf("added %s -> %d%n", change.block(), change.afterIndex());
+        case REMOVED -> System.out.printf("removed %s %d%n", change.block(), change.beforeIndex());
+        case CHANGED -> {
+          var line = new StringBuilder(String.format("changed %s %d -> %d:", change.block(), change.beforeIndex(), change.afterIndex()));
+          for (var field : change.fields())
+            line.append(String.format(" %s %s -> %s,", field.field(), field.before(), field.after()));
+
+          line.setLength(line.length() - 1);
+          System.out.println(line);
+        }
+      }
+    }
+
+    if (diff.isIdentical()) {
+      System.out.println("identical");
+    } else {
+      System.out.println(diff.hasSameFrames() ? "same frames, metadata differs" : "frames differ");
+    }
+
+    System.exit(diff.isIdentical() ? 0 : 1);
+  }
+
+  private static void usage() {
+    System.err.println("usage: Diff <file> <file>");
+    System.exit(2);
+  }
+}
@@ -0,0 +1,89 @@
+package cli;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import gif.BlockMap;
+import gif.data.format.HexDump;
+
+/*
+ *  prints a hex dump of a file, with every row that a structure starts on annotated with it:
+ *    00000000  47 49 46 38 39 61 0a 00  0a 00 91 00 00 ff ff ff  |GIF89a..........|  header, logical screen descriptor (10x10)
+ *
+ *  --offset and --rows pick out part of the file, only that part is read and formatted,
+ *  and the file is only skimmed as far as the last row printed
+ *
+ *  rows are formatted a page at a time into one buffer, so nothing is built per row
+ */
+public class Dump {
+  private static final int PAGE_ROWS = 1024;
+
+  public static void main(String[] args) throws IOException {
+    var offset = 0L;
+    var rowCount = Long.MAX_VALUE;
+    Path path = null;
+    for (var i=0; i < args.length; ++i) {
+      if (args[i].equals("--offset") && i + 1 < args.length) {
+        offset = Long.decode(args[++i]);
+      } else if (args[i].equals("--rows") && i + 1 < args.length) {
+        rowCount = Long.decode(args[++i]);
+      } else if (args[i].startsWith("--") || path != null) {
+        usage();
+      } else {
+        path = Path.of(args[i]);
+      }
+    }
+
+    if (path == null || offset < 0 || rowCount < 0)
+      usage();
+
+    var output = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false, StandardCharsets.UTF_8);
+    try (var channel = FileChannel.open(path); var stream = Files.newInputStream(path)) {
+      var dump = new HexDump(channel);
+      var blocks = new BlockMap(stream);
+
+      var firstRow = offset / HexDump.ROW_SIZE;
+      var endRow = Math.min(dump.rowCount(), firstRow + Math.min(rowCount, dump.rowCount()));
+
+      var page = new StringBuilder();
+      for (var pageStart=firstRow; pageStart < endRow; pageStart += PAGE_ROWS) {
+        var pageEnd = Math.min(endRow, pageStart + PAGE_ROWS);
+        var regions = blocks.regions(pageStart * HexDump.ROW_SIZE, pageEnd * HexDump.ROW_SIZE);
+
+        page.setLength(0);
+        var next = 0;
+        for (var row=pageStart; row < pageEnd; ++row) {
+          dump.formatRow(page, row);
+
+          // regions are in order, so the ones starting on this row follow the ones before it
+          var rowEnd = (row + 1) * HexDump.ROW_SIZE;
+          for (var separator = "  "; next < regions.size() && regions.get(next).offset() < rowEnd; ++next) {
+            if (regions.get(next).offset() < row * HexDump.ROW_SIZE)
+              continue;  // started on an earlier page
+
+            page.append(separator).append(regions.get(next).description());
+            separator = ", ";
+          }
+
+          page.append('\n');
+        }
+
+        output.append(page);
+      }
+    }
+
+    output.flush();
+  }
+
+  private static void usage() {
+    System.err.println("usage: Dump [--offset n] [--rows n] <file>");
+    System.exit(2);
+  }
+}
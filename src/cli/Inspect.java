@@ -0,0 +1,287 @@
+package cli;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import gif.Gif;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.ByteBufferInputStream;
+import gif.data.ParseOptions;
+import gif.data.exception.ParseException;
+import gif.data.format.ByteFormatter;
+
+/*
+ *  headless batch inspector
+ *
+ *  walks the given files and directories, parsing every .gif on a virtual thread with at most
+ *  --concurrency files in flight, and prints one JSON object per file:
+ *    {"path":"a.gif","size":1234,"version":"89a","width":10,"height":10,"frames":2,"extensions":{"0xf9":2}}
+ *    {"path":"b.gif","size":12,"error":"unexpected end of stream (at offset 12)","offset":12}
+ *
+ *  warnings about a file are listed under "warnings", --trusted skips them along with the checks
+ *  that are only worth doing once (see gif.data.ParseOptions)
+ *
+ *  with --statistics the image data is decoded as well, and what the LZW decoder saw is added
+ *  under "lzw" (see gif.lzw.Statistics)
+ *
+ *  throughput is reported on stderr at the end
+ */
+public class Inspect {
+  private static final int DEFAULT_CONCURRENCY = 64;
+
+  private final PrintStream output;
+  private final Semaphore permits;
+  private final boolean collectsStatistics;
+  private final ParseOptions options;
+
+  private final LongAdder fileCount  = new LongAdder();
+  private final LongAdder errorCount = new LongAdder();
+  private final LongAdder byteCount  = new LongAdder();
+
+  private Inspect(PrintStream output, int concurrency, boolean collectsStatistics, ParseOptions options) {
+    this.output             = output;
+    this.permits            = new Semaphore(concurrency);
+    this.collectsStatistics = collectsStatistics;
+    this.options            = options;
+  }
+
+  public static void main(String[] args) throws IOException {
+    var concurrency = DEFAULT_CONCURRENCY;
+    var collectsStatistics = false;
+    var options = ParseOptions.STRICT;
+    var roots = new ArrayList<Path>();
+    for (var i=0; i < args.length; ++i) {
+      if (args[i].equals("--concurrency") && i + 1 < args.length) {
+        concurrency = Integer.parseInt(args[++i]);
+      } else if (args[i].equals("--statistics")) {
+        collectsStatistics = true;
+      } else if (args[i].equals("--trusted")) {
+        options = ParseOptions.TRUSTED;
+      } else if (args[i].startsWith("--")) {
+        usage();
+      } else {
+        roots.add(Path.of(args[i]));
+      }
+    }
+
+    if (roots.isEmpty() || concurrency < 1)
+      usage();
+
+    var output = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false, StandardCharsets.UTF_8);
+    var inspect = new Inspect(output, concurrency, collectsStatistics, options);
+
+    var start = System.nanoTime();
+    inspect.run(roots);
+    var seconds = (System.nanoTime() - start) / 1e9;
+
+    output.flush();
+
+    var files = inspect.fileCount.sum();
+    var megabytes = inspect.byteCount.sum() / 1e6;
+    System.err.printf(
+      "%d files (%d failed), %.1f MB in %.2f s: %.1f files/s, %.1f MB/s%n",
+      files, inspect.errorCount.sum(), megabytes, seconds, files / seconds, megabytes / seconds);
+  }
+
+  private static void usage() {
+    System.err.println("usage: Inspect [--concurrency n] [--statistics] [--trusted] <file or directory>...");
+    System.exit(2);
+  }
+
+  private void run(Iterable<Path> roots) throws IOException {
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (var root : roots) {
+        // files named explicitly are inspected whatever their extension
+        if (!Files.isDirectory(root)) {
+          submit(executor, root);
+          continue;
+        }
+
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) {
+            if (attributes.isRegularFile() && path.getFileName().toString().toLowerCase().endsWith(".gif"))
+              submit(executor, path);
+
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path path, IOException e) {
+            fileCount.increment();
+            print(failure(path, -1, e));
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      }
+    }  // waits for every file to be done
+  }
+
+  // blocks the walk while too many files are in flight, so the queue never holds the whole tree
+  private void submit(ExecutorService executor, Path path) {
+    permits.acquireUninterruptibly();
+    executor.execute(() -> {
+      try {
+        print(inspect(path));
+      } finally {
+        permits.release();
+      }
+    });
+  }
+
+  private void print(String record) {
+    synchronized (output) {
+      output.println(record);
+    }
+  }
+
+  private String inspect(Path path) {
+    fileCount.increment();
+
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(path);
+    } catch (IOException e) {
+      return failure(path, -1, e);
+    }
+
+    byteCount.add(bytes.length);
+
+    try {
+      // read into the heap rather than mapped, page faults on a mapping would block the carrier thread
+      var warnings = new ArrayList<String>();
+      var gif = new Gif(new ByteBufferInputStream(ByteBuffer.wrap(bytes)), options.withWarnings(warnings::add));
+
+      var frameCount = 0;
+      var extensionCounts = new TreeMap<String, Integer>();
+      for (var block : gif.blocks) {
+        switch (block) {
+          case LabeledBlock.Image image -> {
+            frameCount++;
+
+            // graphic control extensions are attached to the image they apply to
+            image.graphicControlExtension().ifPresent(extension ->
+              extensionCounts.merge(ByteFormatter.format(extension.label()), 1, Integer::sum));
+          }
+          case Extension extension -> extensionCounts.merge(ByteFormatter.format(extension.label()), 1, Integer::sum);
+          default -> {}
+        }
+      }
+
+      var record = new StringBuilder()
+        .append("{\"path\":").append(quote(path.toString()))
+        .append(",\"size\":").append(bytes.length)
+        .append(",\"version\":").append(quote(version(gif)))
+        .append(",\"width\":").append(gif.screen.width().intValue())
+        .append(",\"height\":").append(gif.screen.height().intValue())
+        .append(",\"frames\":").append(frameCount)
+        .append(",\"extensions\":{");
+
+      var isFirst = true;
+      for (var entry : extensionCounts.entrySet()) {
+        if (!isFirst)
+          record.append(',');
+
+        record.append(quote(entry.getKey())).append(':').append(entry.getValue());
+        isFirst = false;
+      }
+
+      record.append('}');
+
+      if (!warnings.isEmpty()) {
+        record.append(",\"warnings\":[");
+        for (var i=0; i < warnings.size(); ++i)
+          record.append(i == 0 ? "" : ",").append(quote(warnings.get(i)));
+
+        record.append(']');
+      }
+
+      if (collectsStatistics) {
+        var statistics = gif.statistics();
+        record
+          .append(",\"lzw\":{")
+          .append("\"codesRead\":").append(statistics.codesRead())
+          .append(",\"clearCodes\":").append(statistics.clearCodes())
+          .append(",\"tableFills\":").append(statistics.tableFills())
+          .append(",\"longestString\":").append(statistics.longestString())
+          .append(",\"compressedBytes\":").append(statistics.compressedBytes())
+          .append(",\"decodedBytes\":").append(statistics.decodedBytes())
+          .append(",\"compressionRatio\":").append(String.format(Locale.ROOT, "%.3f", statistics.compressionRatio()))
+          .append(",\"subBlocks\":").append(statistics.subBlockCount())
+          .append('}');
+      }
+
+      return record.append('}').toString();
+    } catch (IOException | RuntimeException e) {  // ParseException included
+      return failure(path, bytes.length, e);
+    }
+  }
+
+  private static String version(Gif gif) {
+    var version = new StringBuilder();
+    for (var b : gif.header.version().data())
+      version.append((char)b.intValue());
+
+    return version.toString();
+  }
+
+  private String failure(Path path, long size, Exception e) {
+    errorCount.increment();
+
+    var record = new StringBuilder()
+      .append("{\"path\":").append(quote(path.toString()));
+
+    if (size >= 0)
+      record.append(",\"size\":").append(size);
+
+    var message = Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName());
+    record.append(",\"error\":").append(quote(message));
+
+    if (e instanceof ParseException parseException && parseException.offset().isPresent())
+      record.append(",\"offset\":").append(parseException.offset().getAsLong());
+
+    return record.append('}').toString();
+  }
+
+  private static String quote(String s) {
+    var result = new StringBuilder(s.length() + 2).append('"');
+    for (var i=0; i < s.length(); ++i) {
+      var c = s.charAt(i);
+      switch (c) {
+        case '"'  -> result.append("\\\"");
+        case '\\' -> result.append("\\\\");
+        case '\n' -> result.append("\\n");
+        case '\r' -> result.append("\\r");
+        case '\t' -> result.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            result.append(String.format("\\u%04x", (int)c));
+          } else {
+            result.append(c);
+          }
+        }
+      }
+    }
+
+    return result.append('"').toString();
+  }
+}
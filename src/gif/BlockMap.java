@@ -0,0 +1,200 @@
+package gif;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import gif.block.Block;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.GifInputStream;
+import gif.data.ParseOptions;
+import gif.data.exception.InvalidValue;
+import gif.data.exception.ParseException;
+import gif.data.exception.UnexpectedEndOfStream;
+import gif.data.format.ByteFormatter;
+
+/*
+ *  where every structure in a file starts and ends, for annotating a hex dump
+ *
+ *  the file is skimmed like FrameIndex skims it, but only as far as has been asked for, so the
+ *  start of a file of any size can be annotated straight away
+ *
+ *  skimming stops at the first thing that can't be parsed, which is kept as a region of its own
+ *
+ *  skimTo may be called from one thread while others look at the regions found so far
+ */
+public final class BlockMap {
+  private static final ParseOptions OPTIONS = ParseOptions.TRUSTED;
+
+  public record Region(long offset, long length, String description) {
+    public Region(long offset, long length, String description) {
+      this.offset      = offset;
+      this.length      = length;
+      this.description = Objects.requireNonNull(description);
+    }
+
+    public long end() { return offset + length; }
+  }
+
+  private final GifInputStream stream;
+  private boolean hasScreen = false;
+  private volatile boolean isComplete = false;
+
+  // guarded by itself, only held while adding or looking, never while skimming
+  private final List<Region> regions = new ArrayList<>();
+
+  public BlockMap(InputStream stream) {
+    this.stream = GifInputStream.of(stream);
+  }
+
+  // whether the whole file has been skimmed (or skimming stopped at an error)
+  public boolean isComplete() { return isComplete; }
+
+  // how far into the file has been skimmed
+  public long skimmedTo() {
+    synchronized (regions) {
+      return regions.isEmpty() ? 0 : regions.getLast().end();
+    }
+  }
+
+  // skims until every structure starting before offset is known
+  public synchronized void skimTo(long offset) throws IOException {
+    while (!isComplete && skimmedTo() < offset)
+      skimNext();
+  }
+
+  // regions found so far that overlap [start, end), in order
+  public List<Region> knownRegions(long start, long end) {
+    synchronized (regions) {
+      // regions are in order and don't overlap, so the first one ending after start is found by bisection
+      // (an error takes up no bytes, so it counts if it's at start)
+      var low = 0;
+      var high = regions.size();
+      while (low < high) {
+        var middle = (low + high) >>> 1;
+        var region = regions.get(middle);
+        if (region.end() <= start && region.offset() < start) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+
+      var overlapping = new ArrayList<Region>();
+      for (var i=low; i < regions.size() && regions.get(i).offset() < end; ++i)
+        overlapping.add(regions.get(i));
+
+      return overlapping;
+    }
+  }
+
+  // skims as far as it needs to first
+  public List<Region> regions(long start, long end) throws IOException {
+    skimTo(end);
+    return knownRegions(start, end);
+  }
+
+  private void skimNext() throws IOException {
+    var start = stream.offset();
+    try {
+      if (!hasScreen) {
+        Block.Header.readFrom(stream);
+        add(start, "header");
+
+        var screenStart = stream.offset();
+        var screen = Block.Screen.readFrom(stream, OPTIONS);
+        // the screen is read along with its color table, which gets a region of its own
+        add(screenStart, screenStart + 7, String.format("logical screen descriptor (%dx%d)", screen.width().intValue(), screen.height().intValue()));
+
+        hasScreen = true;
+        if (stream.offset() != screenStart + 7)
+          add(screenStart + 7, "global color table");
+
+        return;
+      }
+
+      var label = (byte)stream.readUnsignedByte();
+      switch (label) {
+        case Extension.label -> {
+          var extensionLabel = (byte)stream.readUnsignedByte();
+          var subBlockCount = skipDataBlock();
+          add(start, String.format("%s (%d sub-blocks)", extensionName(extensionLabel), subBlockCount));
+        }
+        case LabeledBlock.Image.label -> {
+          var left   = stream.readUnsignedShort();
+          var top    = stream.readUnsignedShort();
+          var width  = stream.readUnsignedShort();
+          var height = stream.readUnsignedShort();
+          var packedFields = stream.readUnsignedByte();
+          add(start, String.format("image descriptor (%dx%d at %d, %d)", width, height, left, top));
+
+          if (((packedFields >> 7) & 1) == 1) {
+            var colorTableStart = stream.offset();
+            skip(3 * (1 << ((packedFields & 7) + 1)));
+            add(colorTableStart, "local color table");
+          }
+
+          var dataStart = stream.offset();
+          var minimumCodeSize = stream.readUnsignedByte();
+          var subBlockCount = skipDataBlock();
+          add(dataStart, String.format("image data (minimum code size %d, %d sub-blocks)", minimumCodeSize, subBlockCount));
+        }
+        case LabeledBlock.Trailer.label -> {
+          add(start, "trailer");
+          isComplete = true;
+        }
+        default ->
+          throw new InvalidValue(ByteFormatter::format, "label", label, Extension.label, LabeledBlock.Image.label, LabeledBlock.Trailer.label);
+      }
+    } catch (ParseException e) {
+      // whatever was read of the structure is left out, the error marks where reading stopped
+      synchronized (regions) {
+        regions.add(new Region(stream.offset(), 0, "error: " + e.getMessage()));
+      }
+
+      isComplete = true;
+    }
+  }
+
+  private static String extensionName(byte label) {
+    return switch (label) {
+      case Extension.GraphicControlExtension.label -> "graphic control extension";
+      case (byte)0xfe -> "comment extension";
+      case (byte)0xff -> "application extension";
+      case 0x01       -> "plain text extension";
+      default         -> "extension " + ByteFormatter.format(label);
+    };
+  }
+
+  // the region runs from start up to where the stream is now
+  private void add(long start, String description) {
+    add(start, stream.offset(), description);
+  }
+
+  private void add(long start, long end, String description) {
+    synchronized (regions) {
+      regions.add(new Region(start, end - start, description));
+    }
+  }
+
+  private void skip(int byteCount) throws IOException, UnexpectedEndOfStream {
+    try {
+      stream.skipNBytes(byteCount);
+    } catch (EOFException e) {
+      throw new UnexpectedEndOfStream();
+    }
+  }
+
+  // returns the number of sub-blocks skipped
+  private int skipDataBlock() throws IOException, UnexpectedEndOfStream {
+    var count = 0;
+    for (int length; (length = stream.readUnsignedByte()) != 0; ++count)
+      skip(length);
+
+    return count;
+  }
+}
@@ -0,0 +1,282 @@
+package gif;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import gif.block.Block;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.DisposalMethod;
+import gif.data.GlobalColorTable;
+import gif.data.exception.ParseException;
+import gif.data.exception.TooManyPixels;
+import gif.jfr.CompositeEvent;
+import gif.lzw.Decoder;
+import gif.lzw.Statistics;
+
+/*
+ *  renders the frames of an animation onto the logical screen, one at a time
+ *
+ *  buffers are allocated once and reused, the canvas returned by canvas() is overwritten by
+ *  the next call to nextFrame()
+ *
+ *  like browsers, the canvas starts out transparent and restoring to the background
+ *  makes the area transparent instead of filling it with the background color
+ *
+ *  compositors over a FrameIndex can go back to earlier frames by restoring snapshots of them
+ */
+public class Compositor {
+  public final int width;
+  public final int height;
+
+  private final ImageSource images;
+  private final Optional<GlobalColorTable> globalColorTable;
+
+  private final int[] canvas;
+  private int[] previous = null;  // canvas before the current frame, for RESTORE_PREVIOUS (allocated the first time it's used)
+  private final Decoder decoder = new Decoder();
+  private byte[] indices = new byte[0];  // grows to the largest frame decoded
+  private Optional<FrameCache> cache = Optional.empty();
+
+  private LabeledBlock.Image image = null;
+  private DisposalMethod disposalMethod = DisposalMethod.UNSPECIFIED;
+  private int frameIndex = -1;
+
+  // clipped to the canvas
+  private int frameLeft, frameTop, frameRight, frameBottom;
+
+  // gives the image of the frame with the given index, which only goes back after a restore
+  @FunctionalInterface
+  private interface ImageSource {
+    Optional<LabeledBlock.Image> image(int index) throws IOException, ParseException;
+  }
+
+  // everything needed to carry on compositing after a frame, see snapshot
+  public static final class Snapshot {
+    private final int[] canvas;
+    private final int[] previous;  // null unless the frame is to be restored to it
+    private final LabeledBlock.Image image;
+    private final DisposalMethod disposalMethod;
+    private final int frameIndex;
+    private final int frameLeft, frameTop, frameRight, frameBottom;
+
+    private Snapshot(Compositor compositor) {
+      canvas         = compositor.canvas.clone();
+      previous       = compositor.disposalMethod == DisposalMethod.RESTORE_PREVIOUS ? compositor.previous.clone() : null;
+      image          = compositor.image;
+      disposalMethod = compositor.disposalMethod;
+      frameIndex     = compositor.frameIndex;
+      frameLeft      = compositor.frameLeft;
+      frameTop       = compositor.frameTop;
+      frameRight     = compositor.frameRight;
+      frameBottom    = compositor.frameBottom;
+    }
+
+    public int frameIndex() { return frameIndex; }
+
+    // bytes taken up by the copies of the canvas
+    public long size() {
+      return 4L * canvas.length + (previous != null ? 4L * previous.length : 0);
+    }
+  }
+
+  private Compositor(Block.Screen screen, ImageSource images) {
+    this.width  = screen.width ().intValue();
+    this.height = screen.height().intValue();
+
+    this.images = images;
+    this.globalColorTable = screen.globalColorTable();
+
+    canvas = new int[TooManyPixels.check("logical screen", width, height)];
+  }
+
+  // for frames that are passed in to composite() instead of being read from a source
+  Compositor(Block.Screen screen) {
+    this(screen, index -> Optional.empty());
+  }
+
+  public Compositor(Gif gif) {
+    this(gif.screen, new ImageSource() {
+      private final List<LabeledBlock.Image> images = Arrays.stream(gif.blocks)
+        .filter(LabeledBlock.Image.class::isInstance)
+        .map(LabeledBlock.Image.class::cast)
+        .toList();
+
+      @Override
+      public Optional<LabeledBlock.Image> image(int index) {
+        return index < images.size() ? Optional.of(images.get(index)) : Optional.empty();
+      }
+    });
+  }
+
+  // images are read from the file as they're needed, so frames can be gone back to with restore
+  public Compositor(FrameIndex index) {
+    this(index.screen, i -> i < index.frameCount() ? Optional.of(index.image(i)) : Optional.empty());
+  }
+
+  // the reader only goes forward, so restoring a snapshot of an earlier frame doesn't work
+  public Compositor(GifReader reader) {
+    this(reader.screen, new ImageSource() {
+      private int nextIndex = 0;
+
+      @Override
+      public Optional<LabeledBlock.Image> image(int index) throws IOException, ParseException {
+        if (index != nextIndex)
+          throw new IllegalStateException("can't go back to frame " + index + " of a GifReader");
+
+        for (Optional<LabeledBlock> block; (block = reader.next()).isPresent(); ) {
+          if (block.get() instanceof LabeledBlock.Image image) {
+            nextIndex++;
+            return Optional.of(image);
+          }
+        }
+
+        return Optional.empty();
+      }
+    });
+  }
+
+  public int[] canvas() { return canvas; }
+
+  public int frameIndex() { return frameIndex; }
+
+  public LabeledBlock.Image image() { return image; }
+
+  // adds what the decoder sees in every following frame to statistics, until it's set back to empty
+  public void collectStatistics(Optional<Statistics> statistics) {
+    decoder.collectStatistics(statistics);
+  }
+
+  /*
+   *  takes the indices of every following frame from cache, decoding only the ones it misses,
+   *  until it's set back to empty
+   *  frames found in the cache aren't seen by the decoder, so they don't add to the statistics
+   */
+  public void useCache(Optional<FrameCache> cache) {
+    this.cache = cache;
+  }
+
+  // returns false once there are no frames left
+  public boolean nextFrame() throws IOException, ParseException {
+    var next = images.image(frameIndex + 1);
+    if (next.isEmpty())
+      return false;
+
+    var image = next.get();
+    if (cache.isPresent()) {
+      composite(image, cache.get().indices(image));
+      return true;
+    }
+
+    var imageWidth = image.width().intValue();
+    var pixelCount = TooManyPixels.check("image", imageWidth, image.height().intValue());
+    if (indices.length < pixelCount)
+      indices = new byte[pixelCount];
+
+    image.decodeIndices(decoder, indices, 0, imageWidth);
+    composite(image, indices);
+
+    return true;
+  }
+
+  // keeps a copy of the canvas, which costs up to twice its size
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  // goes back (or forward) to the frame a snapshot of this compositor was taken after
+  public void restore(Snapshot snapshot) {
+    if (snapshot.canvas.length != canvas.length)
+      throw new IllegalArgumentException("snapshot is of a different canvas size");
+
+    System.arraycopy(snapshot.canvas, 0, canvas, 0, canvas.length);
+    if (snapshot.previous != null) {
+      if (previous == null)
+        previous = new int[canvas.length];
+
+      System.arraycopy(snapshot.previous, 0, previous, 0, previous.length);
+    }
+
+    image          = snapshot.image;
+    disposalMethod = snapshot.disposalMethod;
+    frameIndex     = snapshot.frameIndex;
+    frameLeft      = snapshot.frameLeft;
+    frameTop       = snapshot.frameTop;
+    frameRight     = snapshot.frameRight;
+    frameBottom    = snapshot.frameBottom;
+  }
+
+  // draws an image whose indices were already decoded as the next frame
+  void composite(LabeledBlock.Image image, byte[] indices) throws ParseException {
+    var event = new CompositeEvent();
+    event.begin();
+
+    dispose();
+
+    this.image = image;
+    frameIndex++;
+
+    frameLeft   = Math.min(image.left().intValue(), width );
+    frameTop    = Math.min(image.top ().intValue(), height);
+    frameRight  = Math.min(image.left().intValue() + image.width ().intValue(), width );
+    frameBottom = Math.min(image.top ().intValue() + image.height().intValue(), height);
+
+    disposalMethod = image.graphicControlExtension()
+      .map(Extension.GraphicControlExtension::disposalMethod)
+      .orElse(DisposalMethod.UNSPECIFIED);
+
+    if (disposalMethod == DisposalMethod.RESTORE_PREVIOUS) {
+      if (previous == null)
+        previous = new int[canvas.length];
+
+      copyFrame(canvas, previous);
+    }
+
+    draw(indices);
+
+    if (event.shouldCommit()) {
+      event.frameIndex = frameIndex;
+      event.left       = image.left  ().intValue();
+      event.top        = image.top   ().intValue();
+      event.width      = image.width ().intValue();
+      event.height     = image.height().intValue();
+      event.commit();
+    }
+  }
+
+  private void dispose() {
+    switch (disposalMethod) {
+      case RESTORE_BACKGROUND -> {
+        for (var y=frameTop; y < frameBottom; ++y)
+          Arrays.fill(canvas, y * width + frameLeft, y * width + frameRight, 0);
+      }
+      case RESTORE_PREVIOUS -> copyFrame(previous, canvas);
+      default -> {}  // leave the frame in place
+    }
+  }
+
+  private void copyFrame(int[] src, int[] dst) {
+    for (var y=frameTop; y < frameBottom; ++y)
+      System.arraycopy(src, y * width + frameLeft, dst, y * width + frameLeft, frameRight - frameLeft);
+  }
+
+  private void draw(byte[] indices) throws ParseException {
+    var imageWidth = image.width().intValue();
+
+    var palette = image.colorTable(globalColorTable).argb(image.transparentColorIndex());  // indices past the color table are transparent
+
+    var left = image.left().intValue();
+    var top  = image.top ().intValue();
+    for (var y=frameTop; y < frameBottom; ++y) {
+      var source = (y - top) * imageWidth - left;
+      var row = y * width;
+      for (var x=frameLeft; x < frameRight; ++x) {
+        var color = palette[Byte.toUnsignedInt(indices[source + x])];
+        if (color != 0)
+          canvas[row + x] = color;
+      }
+    }
+  }
+}
@@ -0,0 +1,277 @@
+package gif;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import gif.block.LabeledBlock;
+import gif.data.ColorTable;
+import gif.data.DataBlock;
+import gif.data.GlobalColorTable;
+import gif.data.Pixel;
+import gif.data.exception.ParseException;
+import gif.lzw.Decoder;
+
+/*
+ *  decoded images, shared between every file they appear in
+ *
+ *  entries are keyed by the image data along with the geometry it decodes to (and the palette
+ *  for ARGB frames), so the same frame in two files is decoded once
+ *
+ *  the cache is split into stripes by key hash, each with its own lock, under one byte budget
+ *  shared by all of them: once it's over, least recently used entries are evicted from the new
+ *  entry's stripe, then from the others in turn, so recency is only exact within a stripe
+ *  decoding happens outside the locks, so two threads missing on the same frame both decode it
+ *
+ *  keys hold a compact copy of the image data rather than a slice of the file, so a cached frame
+ *  doesn't keep a whole mapped file alive, and the copy counts towards the budget
+ *  entries larger than the whole budget aren't cached, they're counted as rejections
+ *
+ *  arrays returned are shared with every other caller, so they mustn't be modified
+ */
+public final class FrameCache {
+  public static final int DEFAULT_STRIPE_COUNT = 16;
+
+  // scratch tables for the threads decoding on a miss
+  private static final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
+  private final long byteBudget;
+  private final Stripe[] stripes;
+  private final AtomicLong size = new AtomicLong();
+
+  private final LongAdder hitCount      = new LongAdder();
+  private final LongAdder missCount     = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder rejectionCount = new LongAdder();
+
+  /*
+   *  identifies a decoded image by what it's decoded from
+   *  the hash of the image data is worked out once, but equal hashes still compare the data itself
+   */
+  private record Key(
+    DataBlock data,
+    int width,
+    int height,
+    boolean isInterlaced,
+    int minimumCodeSize,
+    Optional<ColorTable> colorTable,  // empty for color indices
+    int transparentColorIndex,
+    int hash
+  ) {
+    static Key of(LabeledBlock.Image image, Optional<ColorTable> colorTable, int transparentColorIndex) {
+      var width  = image.width ().intValue();
+      var height = image.height().intValue();
+
+      var hash = image.data().hashCode();
+      hash = 31 * hash + width;
+      hash = 31 * hash + height;
+      hash = 31 * hash + Boolean.hashCode(image.isInterlaced());
+      hash = 31 * hash + image.minimumCodeSize();
+      hash = 31 * hash + colorTable.hashCode();
+      hash = 31 * hash + transparentColorIndex;
+
+      return new Key(image.data(), width, height, image.isInterlaced(), image.minimumCodeSize(), colorTable, transparentColorIndex, hash);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key oKey
+        && hash == oKey.hash
+        && width == oKey.width
+        && height == oKey.height
+        && isInterlaced == oKey.isInterlaced
+        && minimumCodeSize == oKey.minimumCodeSize
+        && transparentColorIndex == oKey.transparentColorIndex
+        && colorTable.equals(oKey.colorTable)
+        && data.equals(oKey.data);
+    }
+
+    @Override
+    public int hashCode() { return hash; }
+
+    // the key to store, which only holds on to the image data itself
+    Key compact() {
+      return new Key(data.compact(), width, height, isInterlaced, minimumCodeSize, colorTable, transparentColorIndex, hash);
+    }
+  }
+
+  // value is a byte[] of indices or an int[] of ARGB colors
+  private record Entry(Object value, long size) {}
+
+  private static final class Stripe {
+    final ReentrantLock lock = new ReentrantLock();
+    final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);  // in access order
+  }
+
+  public FrameCache(long byteBudget) {
+    this(byteBudget, DEFAULT_STRIPE_COUNT);
+  }
+
+  public FrameCache(long byteBudget, int stripeCount) {
+    if (byteBudget < 0)
+      throw new IllegalArgumentException("byte budget must not be negative (got " + byteBudget + ")");
+
+    if (stripeCount < 1)
+      throw new IllegalArgumentException("stripe count must be positive (got " + stripeCount + ")");
+
+    this.byteBudget = byteBudget;
+    this.stripes = new Stripe[stripeCount];
+    for (var i=0; i < stripeCount; ++i)
+      stripes[i] = new Stripe();
+  }
+
+  // the color index of every pixel, row by row, like Image.decodeIndices
+  public byte[] indices(LabeledBlock.Image image) throws ParseException {
+    var key = Key.of(image, Optional.empty(), -1);
+
+    var cached = get(key);
+    if (cached != null)
+      return (byte[])cached;
+
+    var width = image.width().intValue();
+    var indices = new byte[width * image.height().intValue()];
+    image.decodeIndices(decoders.get(), indices, 0, width);
+
+    put(key, indices, indices.length);
+    return indices;
+  }
+
+  // the color of every pixel, row by row, like Image.decodeArgb
+  public int[] argb(LabeledBlock.Image image, Optional<GlobalColorTable> globalColorTable) throws ParseException {
+    var key = Key.of(image, Optional.of(image.colorTable(globalColorTable)), image.transparentColorIndex());
+
+    var cached = get(key);
+    if (cached != null)
+      return (int[])cached;
+
+    var width = image.width().intValue();
+    var argb = new int[width * image.height().intValue()];
+    image.decodeArgb(decoders.get(), globalColorTable, argb, 0, width);
+
+    put(key, argb, 4L * argb.length);
+    return argb;
+  }
+
+  // like Image.getPixels, but only builds the pixels from the cached indices
+  public Pixel[][] getPixels(LabeledBlock.Image image, Optional<GlobalColorTable> globalColorTable) throws ParseException {
+    return image.getPixels(globalColorTable, indices(image));
+  }
+
+  private int stripeIndex(Key key) {
+    // spreads the high bits down, since the low bits of neighbouring hashes tend to be alike
+    var hash = key.hash ^ (key.hash >>> 16);
+    return Math.floorMod(hash, stripes.length);
+  }
+
+  private Object get(Key key) {
+    var stripe = stripes[stripeIndex(key)];
+
+    Entry entry;
+    stripe.lock.lock();
+    try {
+      entry = stripe.entries.get(key);
+    } finally {
+      stripe.lock.unlock();
+    }
+
+    (entry != null ? hitCount : missCount).increment();
+    return entry != null ? entry.value() : null;
+  }
+
+  private void put(Key key, Object value, long valueSize) {
+    key = key.compact();
+
+    // the key keeps the image data alive, so it counts towards the budget as well
+    var size = valueSize + key.data().encodedSize();
+    if (size > byteBudget) {
+      rejectionCount.increment();
+      return;
+    }
+
+    var index = stripeIndex(key);
+    var stripe = stripes[index];
+    stripe.lock.lock();
+    try {
+      var previous = stripe.entries.put(key, new Entry(value, size));
+      this.size.addAndGet(size - (previous != null ? previous.size() : 0));
+
+      // the new entry is the most recently used, so it's the last one left
+      evict(stripe, 1);
+    } finally {
+      stripe.lock.unlock();
+    }
+
+    // one stripe locked at a time, so puts on other stripes can't deadlock with this one
+    for (var i=1; i < stripes.length && this.size.get() > byteBudget; ++i) {
+      var other = stripes[(index + i) % stripes.length];
+      other.lock.lock();
+      try {
+        evict(other, 0);
+      } finally {
+        other.lock.unlock();
+      }
+    }
+  }
+
+  // evicts the stripe's least recently used entries while the cache is over budget, keeping at least kept of them
+  private void evict(Stripe stripe, int kept) {
+    Iterator<Entry> eldest = stripe.entries.values().iterator();
+    while (size.get() > byteBudget && stripe.entries.size() > kept) {
+      size.addAndGet(-eldest.next().size());
+      eldest.remove();
+      evictionCount.increment();
+    }
+  }
+
+  public void clear() {
+    for (var stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        for (var entry : stripe.entries.values())
+          size.addAndGet(-entry.size());
+
+        stripe.entries.clear();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+  }
+
+  public long byteBudget() { return byteBudget; }
+
+  // bytes taken up by the cached entries
+  public long size() { return size.get(); }
+
+  public int entryCount() {
+    var count = 0;
+    for (var stripe : stripes) {
+      stripe.lock.lock();
+      try {
+        count += stripe.entries.size();
+      } finally {
+        stripe.lock.unlock();
+      }
+    }
+
+    return count;
+  }
+
+  public long hitCount() { return hitCount.sum(); }
+
+  public long missCount() { return missCount.sum(); }
+
+  public long evictionCount() { return evictionCount.sum(); }
+
+  // entries that weren't cached because they're larger than the whole budget
+  public long rejectionCount() { return rejectionCount.sum(); }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "FrameCache[size=%d, byteBudget=%d, entries=%d, hits=%d, misses=%d, evictions=%d, rejections=%d]",
+      size(), byteBudget, entryCount(), hitCount(), missCount(), evictionCount(), rejectionCount());
+  }
+}
@@ -0,0 +1,168 @@
+package gif;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import gif.block.Block;
+import gif.block.BlockType;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.ByteBufferInputStream;
+import gif.data.ColorTable;
+import gif.data.ParseOptions;
+import gif.data.Pixel;
+import gif.data.State;
+import gif.data.Unsigned;
+import gif.data.exception.InvalidValue;
+import gif.data.exception.OutOfBounds;
+import gif.data.exception.ParseException;
+import gif.data.exception.UnexpectedEndOfStream;
+import gif.data.format.ByteFormatter;
+
+/*
+ *  offsets of every image in a file, found by skimming over it
+ *
+ *  only labels, descriptors and sub-block sizes are read while indexing, so getting to
+ *  an image doesn't cost more than parsing that image
+ */
+public final class FrameIndex {
+  public final Block.Header header;
+  public final Block.Screen screen;
+
+  private final ByteBuffer buffer;
+  private final ParseOptions options;
+  private final List<Frame> frames;
+
+  // local color tables of the images parsed so far, shared between the threads parsing them
+  private final Map<ColorTable, ColorTable> colorTables = new ConcurrentHashMap<>();
+
+  public record Frame(
+    int descriptorOffset,  // offset of the image separator
+    int dataOffset,        // offset of the first sub-block size of the image data
+    Optional<Extension.GraphicControlExtension> graphicControlExtension
+  ) {
+    public Frame(int descriptorOffset, int dataOffset, Optional<Extension.GraphicControlExtension> graphicControlExtension) {
+      this.descriptorOffset        = descriptorOffset;
+      this.dataOffset              = dataOffset;
+      this.graphicControlExtension = Objects.requireNonNull(graphicControlExtension);
+    }
+  }
+
+  public FrameIndex(ByteBuffer buffer) throws IOException, ParseException {
+    this(buffer, ParseOptions.STRICT);
+  }
+
+  public FrameIndex(ByteBuffer buffer, ParseOptions options) throws IOException, ParseException {
+    this.buffer  = buffer.slice();
+    this.options = Objects.requireNonNull(options);
+
+    var stream = new ByteBufferInputStream(this.buffer);
+    try {
+      header = Block.Header.readFrom(stream);
+      screen = Block.Screen.readFrom(stream, options);
+      frames = readFrames(stream);
+    } catch (ParseException e) {
+      throw e.at(stream.offset());
+    }
+  }
+
+  private static List<Frame> readFrames(ByteBufferInputStream stream) throws IOException, ParseException {
+    var frames = new ArrayList<Frame>();
+    var state = new State();
+    while (true) {
+      var descriptorOffset = stream.position();
+
+      var label = Unsigned.Byte.readFrom(stream).byteValue();
+      switch (label) {
+        case Extension.label -> {
+          // extension data is only sliced, never copied
+          switch (Extension.readFrom(stream)) {
+            case Extension.GraphicControlExtension graphicControlExtension -> {
+              state.graphicControlExtension = Optional.of(graphicControlExtension);
+            }
+            case Extension extension -> {
+              if (extension instanceof BlockType.GraphicRenderingBlock)
+                state = new State();  // clear control blocks
+            }
+          }
+        }
+        case LabeledBlock.Image.label -> {
+          skip(stream, 4 * 2);  // left, top, width, height
+
+          var packedFields = Unsigned.Byte.readFrom(stream).intValue();
+          if (((packedFields >> 7) & 1) == 1)
+            skip(stream, 3 * (1 << ((packedFields & 7) + 1)));  // local color table
+
+          skip(stream, 1);  // minimum code size
+
+          var dataOffset = stream.position();
+          skipDataBlock(stream);
+
+          frames.add(new Frame(descriptorOffset, dataOffset, state.graphicControlExtension));
+          state = new State();
+        }
+        case LabeledBlock.Trailer.label -> {
+          return List.copyOf(frames);
+        }
+        default ->
+          throw new InvalidValue(ByteFormatter::format, "label", label, Extension.label, LabeledBlock.Image.label, LabeledBlock.Trailer.label);
+      }
+    }
+  }
+
+  public static FrameIndex open(Path path) throws IOException, ParseException {
+    return open(path, ParseOptions.STRICT);
+  }
+
+  public static FrameIndex open(Path path, ParseOptions options) throws IOException, ParseException {
+    return new FrameIndex(Gif.map(path), options);
+  }
+
+  private static void skip(InputStream stream, int byteCount) throws IOException, UnexpectedEndOfStream {
+    if (stream.skip(byteCount) < byteCount)
+      throw new UnexpectedEndOfStream();
+  }
+
+  private static void skipDataBlock(InputStream stream) throws IOException, UnexpectedEndOfStream {
+    int length;
+    while ((length = Unsigned.Byte.readFrom(stream).intValue()) != 0)
+      skip(stream, length);
+  }
+
+  public int frameCount() { return frames.size(); }
+
+  public List<Frame> frames() { return frames; }
+
+  public Frame frame(int index) throws OutOfBounds {
+    return frames.get(OutOfBounds.check("frame index", index, 0, frames.size() - 1));
+  }
+
+  // parses the image of the given frame, safe to call from several threads at once
+  public LabeledBlock.Image image(int index) throws IOException, ParseException {
+    var frame = frame(index);
+
+    var stream = new ByteBufferInputStream(buffer);
+    stream.position(frame.descriptorOffset() + 1);  // skip the image separator
+
+    var state = new State(options, colorTables);
+    state.graphicControlExtension = frame.graphicControlExtension();
+
+    try {
+      return LabeledBlock.Image.readFrom(stream, state);
+    } catch (ParseException e) {
+      throw e.at(stream.offset());
+    }
+  }
+
+  public Pixel[][] decodeFrame(int index) throws IOException, ParseException {
+    return image(index).getPixels(screen.globalColorTable());
+  }
+}
@@ -3,54 +3,237 @@ package gif;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import gif.block.Block;
-import gif.block.BlockType;
 import gif.block.Extension;
 import gif.block.LabeledBlock;
+import gif.data.ByteBufferInputStream;
+import gif.data.ChannelOutputStream;
+import gif.data.ParseOptions;
 import gif.data.Serializable;
-import gif.data.State;
 import gif.data.exception.ParseException;
+import gif.jfr.ParseEvent;
+import gif.jfr.WriteEvent;
+import gif.lzw.BitStream;
+import gif.lzw.Decoder;
+import gif.lzw.Statistics;
 
 public class Gif implements Serializable {
+  // scratch tables for the threads decoding frames in parallel
+  private static final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
   public final Block.Header header;
   public final Block.Screen screen;
   public final LabeledBlock[] blocks;
   public final LabeledBlock.Trailer trailer;
 
   public Gif(InputStream stream) throws IOException, ParseException {
-    header = Block.Header.readFrom(stream);
-    screen = Block.Screen.readFrom(stream);
+    this(stream, ParseOptions.STRICT);
+  }
+
+  // arguments are evaluated in order, so the event begins before the header and screen are read
+  public Gif(InputStream stream, ParseOptions options) throws IOException, ParseException {
+    this(beginParse(), new GifReader(stream, options));
+  }
+
+  // the reader has already read the header and screen, so the event doesn't count them
+  public Gif(GifReader reader) throws IOException, ParseException {
+    this(beginParse(), reader);
+  }
+
+  private Gif(ParseEvent event, GifReader reader) throws IOException, ParseException {
+    header = reader.header;
+    screen = reader.screen;
 
     var blocks = new ArrayList<LabeledBlock>();
-    var state = new State();
+    var frameCount = 0;
     while (true) {
-      switch (LabeledBlock.readFrom(stream, state)) {
+      switch (reader.next().orElseThrow()) {
         case LabeledBlock.Trailer trailer -> {
           this.trailer = trailer;
           this.blocks = blocks.toArray(LabeledBlock[]::new);
 
+          if (event.shouldCommit()) {
+            event.fileSize   = reader.offset();
+            event.width      = screen.width ().intValue();
+            event.height     = screen.height().intValue();
+            event.frameCount = frameCount;
+            event.blockCount = this.blocks.length;
+            event.commit();
+          }
+
           return;
         }
-        case Extension.GraphicControlExtension graphicControlExtension -> {
-          state.graphicControlExtension = Optional.of(graphicControlExtension);
+        case LabeledBlock.Image image -> {
+          blocks.add(image);
+          frameCount++;
         }
-        case LabeledBlock block -> {
-          if (block instanceof BlockType.GraphicRenderingBlock)
-            state = new State();  // clear control blocks
+        case LabeledBlock block -> blocks.add(block);
+      }
+    }
+  }
+
+  // a file made of blocks that were built rather than parsed, see GifEncoder
+  public Gif(Block.Header header, Block.Screen screen, List<LabeledBlock> blocks) {
+    this.header  = Objects.requireNonNull(header);
+    this.screen  = Objects.requireNonNull(screen);
+    this.blocks  = blocks.toArray(LabeledBlock[]::new);
+    this.trailer = new LabeledBlock.Trailer();
+
+    for (var block : this.blocks) {
+      if (Objects.requireNonNull(block) instanceof LabeledBlock.Trailer)
+        throw new IllegalArgumentException("the trailer is added at the end, it can't be one of the blocks");
+    }
+  }
 
-          blocks.add(block);
+  private static ParseEvent beginParse() {
+    var event = new ParseEvent();
+    event.begin();
+
+    return event;
+  }
+
+  /*
+   *  parses the file through a read-only mapping of it
+   *  data blocks are slices of the mapping rather than copies, so they keep it alive
+   */
+  public static Gif open(Path path) throws IOException, ParseException {
+    return open(path, ParseOptions.STRICT);
+  }
+
+  public static Gif open(Path path, ParseOptions options) throws IOException, ParseException {
+    return new Gif(new ByteBufferInputStream(map(path)), options);
+  }
+
+  static MappedByteBuffer map(Path path) throws IOException {
+    try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE)
+        throw new IOException("file too large to map: " + path);
+
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+  }
+
+  public LabeledBlock[] getBlocks() { return blocks.clone(); }
+
+  // decodes the image data of every image, counting what the decoder sees in each
+  public List<Statistics> imageStatistics() throws ParseException {
+    var decoder = decoders.get();
+    var result = new ArrayList<Statistics>();
+    try {
+      for (var block : blocks) {
+        if (block instanceof LabeledBlock.Image image) {
+          var statistics = new Statistics();
+          decoder.collectStatistics(Optional.of(statistics));
+          decoder.decode(new BitStream(image.data()), image.minimumCodeSize());
+
+          result.add(statistics);
         }
       }
+    } finally {
+      decoder.collectStatistics(Optional.empty());
     }
+
+    return result;
   }
 
-  public LabeledBlock[] getBlocks() { return blocks.clone(); }
+  // imageStatistics added together
+  public Statistics statistics() throws ParseException {
+    var result = new Statistics();
+    for (var statistics : imageStatistics())
+      result.add(statistics);
+
+    return result;
+  }
+
+  private record DecodedFrame(LabeledBlock.Image image, byte[] indices) {}
+
+  public List<int[]> decodeAllFrames(int parallelism) throws ParseException {
+    var pool = new ForkJoinPool(parallelism);
+    try {
+      return decodeAllFrames(pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /*
+   *  decodes the images on the executor, then composites them in order as they finish
+   *  returns a copy of the canvas after every frame, see Compositor
+   *
+   *  indices decoded ahead of the compositor are held until it gets to them, then let go,
+   *  so at worst every frame's indices are held at once on top of the canvas copies
+   */
+  public List<int[]> decodeAllFrames(Executor executor) throws ParseException {
+    return decodeAllFrames(executor, Optional.empty());
+  }
+
+  // same as decodeAllFrames, taking the images found in cache from it instead of decoding them
+  public List<int[]> decodeAllFrames(Executor executor, Optional<FrameCache> cache) throws ParseException {
+    var decodedFrames = new ArrayDeque<CompletableFuture<DecodedFrame>>();
+    Arrays.stream(blocks)
+      .filter(LabeledBlock.Image.class::isInstance)
+      .map(LabeledBlock.Image.class::cast)
+      .map(image -> CompletableFuture.supplyAsync(() -> {
+        if (cache.isPresent())
+          return new DecodedFrame(image, cache.get().indices(image));
+
+        var indices = new byte[image.width().intValue() * image.height().intValue()];
+        image.decodeIndices(decoders.get(), indices, 0, image.width().intValue());
+
+        return new DecodedFrame(image, indices);
+      }, executor))
+      .forEach(decodedFrames::add);
+
+    var compositor = new Compositor(screen);
+    var frames = new ArrayList<int[]>(decodedFrames.size());
+    try {
+      // frames are taken off the queue so their indices can be collected once composited
+      while (!decodedFrames.isEmpty()) {
+        var frame = decodedFrames.remove().join();
+        compositor.composite(frame.image(), frame.indices());
+
+        frames.add(compositor.canvas().clone());
+      }
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause)  // ParseException included
+        throw cause;
+
+      throw e;
+    } finally {
+      // whatever stopped compositing, the frames after it aren't needed
+      decodedFrames.forEach(decodedFrame -> decodedFrame.cancel(false));
+    }
+
+    return frames;
+  }
 
   @Override
   public void writeTo(OutputStream stream) throws IOException {
+    var event = new WriteEvent();
+    event.begin();
+
+    writeBlocksTo(stream);
+
+    commit(event, false);
+  }
+
+  private void writeBlocksTo(OutputStream stream) throws IOException {
     header.writeTo(stream);
     screen.writeTo(stream);
 
@@ -59,4 +242,54 @@ public class Gif implements Serializable {
 
     trailer.writeTo(stream);
   }
+
+  /*
+   *  writes the file through a direct buffer, so the header fields take one copy each and
+   *  mapped data blocks are written to the channel without being copied at all
+   *  the buffer is allocated per call rather than per thread, since one is plenty for a whole
+   *  file and threads (virtual ones especially) might never write another
+   *  doesn't close the channel
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+    var event = new WriteEvent();
+    event.begin();
+
+    var stream = new ChannelOutputStream(channel);
+    writeBlocksTo(stream);
+    stream.flush();
+
+    commit(event, true);
+  }
+
+  private void commit(WriteEvent event, boolean isChannel) {
+    if (!event.shouldCommit())
+      return;
+
+    event.size       = encodedSize();
+    event.frameCount = (int)Arrays.stream(blocks).filter(LabeledBlock.Image.class::isInstance).count();
+    event.isChannel  = isChannel;
+    event.commit();
+  }
+
+  // number of bytes writeTo writes
+  private long encodedSize() {
+    var size = 6 + 7L;  // header and logical screen descriptor
+    size += screen.globalColorTable().map(table -> 3 * table.colorTable().size()).orElse(0);
+
+    for (var block : blocks) {
+      size += switch (block) {
+        case LabeledBlock.Image image ->
+          (image.graphicControlExtension().isPresent() ? 8 : 0)
+          + 10  // image descriptor
+          + image.colorTable().map(table -> 3 * table.size()).orElse(0)
+          + 1   // minimum code size
+          + image.data().encodedSize();
+        case Extension.GraphicControlExtension graphicControlExtension -> 8;
+        case Extension extension -> 2 + extension.data().encodedSize();
+        case LabeledBlock.Trailer trailer -> 0;  // kept apart from the other blocks
+      };
+    }
+
+    return size + 1;  // trailer
+  }
 }
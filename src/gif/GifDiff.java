@@ -0,0 +1,369 @@
+package gif;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.ColorTable;
+import gif.data.ContentHash;
+import gif.data.DataBlock;
+import gif.data.GlobalColorTable;
+import gif.data.Unsigned;
+import gif.data.exception.ParseException;
+import gif.data.format.ByteFormatter;
+import gif.lzw.Decoder;
+
+/*
+ *  differences between two files, down to the fields of the blocks that changed
+ *
+ *  blocks are hashed by their payload and the two sequences aligned on equal blocks, the blocks
+ *  left over between two aligned ones are paired with a leftover block of the same kind on the
+ *  other side (as changed) if there is one, and are added or removed otherwise
+ *
+ *  image data is only decoded when the compressed data of two images differs, to tell frames
+ *  that were only recompressed from ones whose pixels changed, so diffing mostly equal files
+ *  only decodes the frames that aren't byte for byte the same
+ */
+public final class GifDiff {
+  public enum Kind { ADDED, REMOVED, CHANGED }
+
+  public record FieldChange(String field, String before, String after) {
+    public FieldChange(String field, String before, String after) {
+      this.field  = Objects.requireNonNull(field );
+      this.before = Objects.requireNonNull(before);
+      this.after  = Objects.requireNonNull(after );
+    }
+  }
+
+  // indices are into Gif.blocks, -1 on the side the block isn't on
+  public record BlockChange(Kind kind, int beforeIndex, int afterIndex, String block, List<FieldChange> fields) {
+    public BlockChange(Kind kind, int beforeIndex, int afterIndex, String block, List<FieldChange> fields) {
+      this.kind        = Objects.requireNonNull(kind);
+      this.beforeIndex = beforeIndex;
+      this.afterIndex  = afterIndex;
+      this.block       = Objects.requireNonNull(block);
+      this.fields      = List.copyOf(fields);
+    }
+  }
+
+  // past this many cells the alignment table isn't built, and leftover blocks are paired in order
+  private static final long MAXIMUM_ALIGNMENT_CELLS = 1L << 24;
+
+  private final Gif before;
+  private final Gif after;
+  private final Decoder decoder = new Decoder();
+  private final Map<LabeledBlock.Image, Long> indicesHashes = new IdentityHashMap<>();
+
+  private final List<FieldChange> screenChanges = new ArrayList<>();
+  private final List<BlockChange> blockChanges  = new ArrayList<>();
+  private final boolean hasSameFrames;
+
+  public GifDiff(Gif before, Gif after) {
+    this.before = Objects.requireNonNull(before);
+    this.after  = Objects.requireNonNull(after );
+
+    diffScreens();
+    diffBlocks();
+    hasSameFrames = compareFrames();
+  }
+
+  // the header and logical screen descriptor, global color table included
+  public List<FieldChange> screenChanges() { return List.copyOf(screenChanges); }
+
+  public List<BlockChange> blockChanges() { return List.copyOf(blockChanges); }
+
+  public boolean isIdentical() { return screenChanges.isEmpty() && blockChanges.isEmpty(); }
+
+  /*
+   *  whether both files have the same images with the same pixels, so what differs is only
+   *  metadata: timing, disposal, extensions, how the images were compressed or where the
+   *  palette is kept
+   */
+  public boolean hasSameFrames() { return hasSameFrames; }
+
+  // hash of everything a block holds, equal blocks hash the same
+  public static long payloadHash(LabeledBlock block) {
+    return switch (block) {
+      case LabeledBlock.Image image -> {
+        var hash = ContentHash.of(image.data().asByteBuffer());
+        hash = ContentHash.combine(hash, image.left  ().intValue());
+        hash = ContentHash.combine(hash, image.top   ().intValue());
+        hash = ContentHash.combine(hash, image.width ().intValue());
+        hash = ContentHash.combine(hash, image.height().intValue());
+        hash = ContentHash.combine(hash, Boolean.hashCode(image.isInterlaced()));
+        hash = ContentHash.combine(hash, image.minimumCodeSize());
+        hash = ContentHash.combine(hash, image.colorTable().hashCode());
+        hash = ContentHash.combine(hash, image.graphicControlExtension().hashCode());
+        yield hash;
+      }
+      case Extension extension -> ContentHash.combine(ContentHash.of(extension.data().asByteBuffer()), extension.label());
+      case LabeledBlock.Trailer trailer -> ContentHash.combine(0, trailer.label());
+    };
+  }
+
+  // hash of the color index of every pixel, row by row, which doesn't depend on how the image was compressed
+  public static long indicesHash(LabeledBlock.Image image) throws ParseException {
+    return indicesHash(image, new Decoder());
+  }
+
+  private static long indicesHash(LabeledBlock.Image image, Decoder decoder) throws ParseException {
+    var width = image.width().intValue();
+    var indices = new byte[width * image.height().intValue()];
+    image.decodeIndices(decoder, indices, 0, width);
+
+    return ContentHash.of(indices);
+  }
+
+  // empty if the image can't be decoded
+  private Optional<Long> cachedIndicesHash(LabeledBlock.Image image) {
+    if (!indicesHashes.containsKey(image)) {
+      try {
+        indicesHashes.put(image, indicesHash(image, decoder));
+      } catch (ParseException e) {
+        indicesHashes.put(image, null);
+      }
+    }
+
+    return Optional.ofNullable(indicesHashes.get(image));
+  }
+
+  private void diffScreens() {
+    var a = before.screen;
+    var b = after .screen;
+
+    compare(screenChanges, "version", before.header.version(), after.header.version());
+    compare(screenChanges, "width",  a.width ().intValue(), b.width ().intValue());
+    compare(screenChanges, "height", a.height().intValue(), b.height().intValue());
+    compare(screenChanges, "pixelAspectRatio", a.pixelAspectRatio().intValue(), b.pixelAspectRatio().intValue());
+    compare(screenChanges, "colorResolution", a.colorResolution(), b.colorResolution());
+    compare(screenChanges, "globalColorTable",
+      a.globalColorTable().map(GlobalColorTable::colorTable),
+      b.globalColorTable().map(GlobalColorTable::colorTable));
+    compare(screenChanges, "backgroundColorIndex",
+      a.globalColorTable().map(GlobalColorTable::backgroundColorIndex),
+      b.globalColorTable().map(GlobalColorTable::backgroundColorIndex));
+  }
+
+  private void diffBlocks() {
+    var a = before.blocks;
+    var b = after .blocks;
+
+    var aHashes = new long[a.length];
+    var bHashes = new long[b.length];
+    for (var i=0; i < a.length; ++i)
+      aHashes[i] = payloadHash(a[i]);
+
+    for (var j=0; j < b.length; ++j)
+      bHashes[j] = payloadHash(b[j]);
+
+    // equal runs at either end are matched without building the table
+    var prefix = 0;
+    while (prefix < a.length && prefix < b.length && isSame(a, aHashes, prefix, b, bHashes, prefix))
+      prefix++;
+
+    var suffix = 0;
+    while (suffix < a.length - prefix && suffix < b.length - prefix
+        && isSame(a, aHashes, a.length - 1 - suffix, b, bHashes, b.length - 1 - suffix))
+      suffix++;
+
+    // matches[i] is the block of b that block prefix + i of a is aligned with, or -1
+    var n = a.length - prefix - suffix;
+    var m = b.length - prefix - suffix;
+    var matches = new int[n];
+    Arrays.fill(matches, -1);
+    if ((long)(n + 1) * (m + 1) <= MAXIMUM_ALIGNMENT_CELLS)
+      align(a, aHashes, b, bHashes, prefix, n, m, matches);
+
+    // walks both sides between aligned blocks, diffing what's left over in between
+    var i = prefix;
+    var j = prefix;
+    for (var k=0; k <= n; ++k) {
+      var isEnd = k == n;
+      if (!isEnd && matches[k] < 0)
+        continue;
+
+      var aEnd = isEnd ? prefix + n : prefix + k;
+      var bEnd = isEnd ? prefix + m : matches[k];
+      diffLeftovers(a, i, aEnd, b, j, bEnd);
+
+      i = aEnd + 1;
+      j = bEnd + 1;
+    }
+  }
+
+  private static boolean isSame(LabeledBlock[] a, long[] aHashes, int i, LabeledBlock[] b, long[] bHashes, int j) {
+    return aHashes[i] == bHashes[j] && a[i].equals(b[j]);
+  }
+
+  // longest common subsequence of the middles of a and b
+  private static void align(LabeledBlock[] a, long[] aHashes, LabeledBlock[] b, long[] bHashes, int offset, int n, int m, int[] matches) {
+    // lengths[i * (m + 1) + j] is the length of the longest common subsequence of the middles from i and j on
+    var lengths = new int[(n + 1) * (m + 1)];
+    for (var i=n-1; i >= 0; --i) {
+      for (var j=m-1; j >= 0; --j) {
+        lengths[i * (m + 1) + j] = aHashes[offset + i] == bHashes[offset + j]
+          ? lengths[(i + 1) * (m + 1) + j + 1] + 1
+          : Math.max(lengths[(i + 1) * (m + 1) + j], lengths[i * (m + 1) + j + 1]);
+      }
+    }
+
+    // the blocks are only compared once they're matched on hash
+    for (int i=0, j=0; i < n && j < m; ) {
+      if (isSame(a, aHashes, offset + i, b, bHashes, offset + j)) {
+        matches[i++] = offset + j++;
+      } else if (lengths[(i + 1) * (m + 1) + j] >= lengths[i * (m + 1) + j + 1]) {
+        ++i;
+      } else {
+        ++j;
+      }
+    }
+  }
+
+  // blocks [aStart, aEnd) of a and [bStart, bEnd) of b weren't aligned with anything
+  private void diffLeftovers(LabeledBlock[] a, int aStart, int aEnd, LabeledBlock[] b, int bStart, int bEnd) {
+    var isPaired = new boolean[bEnd - bStart];
+    for (var i=aStart; i < aEnd; ++i) {
+      var pair = -1;
+      for (var j=bStart; j < bEnd && pair < 0; ++j) {
+        if (!isPaired[j - bStart] && name(a[i]).equals(name(b[j])))
+          pair = j;
+      }
+
+      if (pair < 0) {
+        blockChanges.add(new BlockChange(Kind.REMOVED, i, -1, name(a[i]), List.of()));
+        continue;
+      }
+
+      isPaired[pair - bStart] = true;
+      blockChanges.add(new BlockChange(Kind.CHANGED, i, pair, name(a[i]), diffFields(a[i], b[pair])));
+    }
+
+    for (var j=bStart; j < bEnd; ++j) {
+      if (!isPaired[j - bStart])
+        blockChanges.add(new BlockChange(Kind.ADDED, -1, j, name(b[j]), List.of()));
+    }
+  }
+
+  private List<FieldChange> diffFields(LabeledBlock a, LabeledBlock b) {
+    var changes = new ArrayList<FieldChange>();
+    switch (a) {
+      case LabeledBlock.Image aImage when b instanceof LabeledBlock.Image bImage -> {
+        compare(changes, "left",   aImage.left  ().intValue(), bImage.left  ().intValue());
+        compare(changes, "top",    aImage.top   ().intValue(), bImage.top   ().intValue());
+        compare(changes, "width",  aImage.width ().intValue(), bImage.width ().intValue());
+        compare(changes, "height", aImage.height().intValue(), bImage.height().intValue());
+        compare(changes, "isInterlaced", aImage.isInterlaced(), bImage.isInterlaced());
+        compare(changes, "minimumCodeSize", aImage.minimumCodeSize(), bImage.minimumCodeSize());
+        compare(changes, "colorTable", aImage.colorTable(), bImage.colorTable());
+        diffGraphicControlExtensions(changes, aImage.graphicControlExtension(), bImage.graphicControlExtension());
+
+        if (!aImage.data().equals(bImage.data())) {
+          compare(changes, "data", aImage.data(), bImage.data());
+
+          // images of different sizes can't have the same indices, so there's no point decoding them
+          if (aImage.width().equals(bImage.width()) && aImage.height().equals(bImage.height()))
+            compare(changes, "indices", describeIndices(aImage), describeIndices(bImage));
+        }
+      }
+      case Extension aExtension when b instanceof Extension bExtension ->
+        compare(changes, "data", aExtension.data(), bExtension.data());
+      default -> {}  // trailers are all alike
+    }
+
+    return changes;
+  }
+
+  private void diffGraphicControlExtensions(List<FieldChange> changes, Optional<Extension.GraphicControlExtension> a, Optional<Extension.GraphicControlExtension> b) {
+    if (a.isEmpty() || b.isEmpty()) {
+      compare(changes, "graphicControlExtension", a.isPresent() ? "present" : "none", b.isPresent() ? "present" : "none");
+      return;
+    }
+
+    var aExtension = a.get();
+    var bExtension = b.get();
+    compare(changes, "disposalMethod", aExtension.disposalMethod(), bExtension.disposalMethod());
+    compare(changes, "waitsForUserInput", aExtension.waitsForUserInput(), bExtension.waitsForUserInput());
+    compare(changes, "delayTime", aExtension.delayTime().intValue(), bExtension.delayTime().intValue());
+    compare(changes, "transparentColorIndex", aExtension.transparentColorIndex(), bExtension.transparentColorIndex());
+  }
+
+  // pairs images in order, only decoding the ones whose compressed data differs
+  private boolean compareFrames() {
+    var aImages = images(before);
+    var bImages = images(after );
+    if (aImages.size() != bImages.size())
+      return false;
+
+    var aGlobal = before.screen.globalColorTable().map(GlobalColorTable::colorTable);
+    var bGlobal = after .screen.globalColorTable().map(GlobalColorTable::colorTable);
+    for (var i=0; i < aImages.size(); ++i) {
+      var a = aImages.get(i);
+      var b = bImages.get(i);
+
+      var isSameImage = a.left().equals(b.left()) && a.top().equals(b.top())
+        && a.width().equals(b.width()) && a.height().equals(b.height())
+        && a.transparentColorIndex() == b.transparentColorIndex()
+        && a.colorTable().or(() -> aGlobal).equals(b.colorTable().or(() -> bGlobal));
+
+      if (!isSameImage)
+        return false;
+
+      // decoding the same data with the same geometry gives the same indices
+      var isSameData = a.data().equals(b.data())
+        && a.isInterlaced() == b.isInterlaced()
+        && a.minimumCodeSize() == b.minimumCodeSize();
+
+      if (!isSameData) {
+        var aHash = cachedIndicesHash(a);
+        if (aHash.isEmpty() || !aHash.equals(cachedIndicesHash(b)))
+          return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static List<LabeledBlock.Image> images(Gif gif) {
+    var images = new ArrayList<LabeledBlock.Image>();
+    for (var block : gif.blocks) {
+      if (block instanceof LabeledBlock.Image image)
+        images.add(image);
+    }
+
+    return images;
+  }
+
+  private static String name(LabeledBlock block) {
+    return switch (block) {
+      case LabeledBlock.Image image -> "image";
+      case Extension extension -> "extension " + ByteFormatter.format(extension.label());
+      case LabeledBlock.Trailer trailer -> "trailer";
+    };
+  }
+
+  // values are only described once they're found to differ
+  private static void compare(List<FieldChange> changes, String field, Object before, Object after) {
+    if (!before.equals(after))
+      changes.add(new FieldChange(field, describe(before), describe(after)));
+  }
+
+  private static String describe(Object value) {
+    return switch (value) {
+      case Optional<?> optional -> optional.map(GifDiff::describe).orElse("none");
+      case ColorTable table -> String.format("%d colors%s, %08x", table.size(), table.isSorted() ? " sorted" : "", table.hashCode());
+      case DataBlock data -> String.format("%d bytes in %d sub-blocks, %016x", data.totalSize(), data.subBlockCount(), ContentHash.of(data.asByteBuffer()));
+      case Unsigned unsigned -> String.valueOf(unsigned.intValue());
+      default -> String.valueOf(value);
+    };
+  }
+
+  private String describeIndices(LabeledBlock.Image image) {
+    return cachedIndicesHash(image).map(hash -> String.format("%016x", hash)).orElse("undecodable");
+  }
+}
@@ -0,0 +1,302 @@
+package gif;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import gif.block.Block;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.block.UnknownExtension;
+import gif.data.ChannelOutputStream;
+import gif.data.DataBlock;
+import gif.data.DisposalMethod;
+import gif.data.GlobalColorTable;
+import gif.data.Unsigned;
+import gif.data.Version;
+import gif.data.exception.TooManyPixels;
+import gif.lzw.Encoder;
+import gif.quantize.Palette;
+import gif.quantize.Quantizer;
+
+/*
+ *  encodes ARGB frames into an animated GIF, writing it to a channel as the frames come in
+ *
+ *  every frame is quantized to a local color table of its own (or mapped onto the global one),
+ *  optionally with ordered dithering, and compressed on the executor, so frames are encoded in
+ *  parallel but written in order, and only a few frames per thread are held at a time
+ *
+ *  frames cover the whole screen and each is restored to the background (transparent) before
+ *  the next one, so every frame shows exactly its own pixels
+ *
+ *  not thread-safe, frames are added from one thread
+ */
+public final class GifEncoder implements Closeable {
+  // scratch tables for the threads compressing frames
+  private static final ThreadLocal<Encoder> encoders = ThreadLocal.withInitial(Encoder::new);
+
+  // pixels looked at when picking the global colors of a whole animation
+  private static final long GLOBAL_SAMPLE_SIZE = 1L << 22;
+
+  // delays are in hundredths of a second
+  public record Frame(int[] argb, int delayTime) {
+    public Frame(int[] argb, int delayTime) {
+      if (delayTime < 0 || delayTime > 0xffff)
+        throw new IllegalArgumentException("delay time must be between 0 and 65535 (got " + delayTime + ")");
+
+      this.argb      = Objects.requireNonNull(argb);
+      this.delayTime = delayTime;
+    }
+  }
+
+  /*
+   *  loops forever with a loop count of 0, and plays once without one
+   *
+   *  with a global color table, the colors are picked from the first frame written to a
+   *  channel, or from every frame when they're all encoded at once
+   */
+  public record Options(boolean dithers, boolean usesGlobalColorTable, Optional<Integer> loopCount) {
+    public static final Options DEFAULT = new Options(false, false, Optional.of(0));
+
+    public Options(boolean dithers, boolean usesGlobalColorTable, Optional<Integer> loopCount) {
+      loopCount.ifPresent(count -> {
+        if (count < 0 || count > 0xffff)
+          throw new IllegalArgumentException("loop count must be between 0 and 65535 (got " + count + ")");
+      });
+
+      this.dithers              = dithers;
+      this.usesGlobalColorTable = usesGlobalColorTable;
+      this.loopCount            = Objects.requireNonNull(loopCount);
+    }
+
+    public Options withDithering(boolean dithers) {
+      return new Options(dithers, usesGlobalColorTable, loopCount);
+    }
+
+    public Options withGlobalColorTable(boolean usesGlobalColorTable) {
+      return new Options(dithers, usesGlobalColorTable, loopCount);
+    }
+
+    public Options withLoopCount(Optional<Integer> loopCount) {
+      return new Options(dithers, usesGlobalColorTable, loopCount);
+    }
+  }
+
+  private final int width;
+  private final int height;
+  private final Options options;
+  private final Executor executor;
+  private final int maximumPending;
+
+  private final ChannelOutputStream stream;
+  private Optional<Palette> globalPalette = Optional.empty();
+  private boolean hasStarted = false;
+  private boolean isClosed = false;
+
+  // frames being encoded, in the order they were added
+  private final ArrayDeque<CompletableFuture<LabeledBlock.Image>> pending = new ArrayDeque<>();
+
+  public GifEncoder(WritableByteChannel channel, int width, int height, Options options) {
+    this(channel, width, height, options, ForkJoinPool.commonPool());
+  }
+
+  // doesn't close the channel
+  public GifEncoder(WritableByteChannel channel, int width, int height, Options options, Executor executor) {
+    this.stream   = new ChannelOutputStream(Objects.requireNonNull(channel));
+    this.width    = checkSize("width",  width );
+    this.height   = checkSize("height", height);
+    checkPixelCount(width, height);
+    this.options  = Objects.requireNonNull(options);
+    this.executor = Objects.requireNonNull(executor);
+
+    var parallelism = executor instanceof ForkJoinPool pool ? pool.getParallelism() : Runtime.getRuntime().availableProcessors();
+    this.maximumPending = 2 * Math.max(1, parallelism);
+  }
+
+  // encodes every frame at once, holding the whole file in memory
+  public static Gif encode(int width, int height, List<Frame> frames, Options options) {
+    return encode(width, height, frames, options, ForkJoinPool.commonPool());
+  }
+
+  public static Gif encode(int width, int height, List<Frame> frames, Options options, Executor executor) {
+    checkSize("width",  width );
+    checkSize("height", height);
+    checkPixelCount(width, height);
+    frames.forEach(frame -> checkFrame(frame, width, height));
+
+    Optional<Palette> globalPalette = Optional.empty();
+    if (options.usesGlobalColorTable() && !frames.isEmpty()) {
+      var quantizer = new Quantizer();
+      var step = (int)Math.max(1, (long)width * height * frames.size() / GLOBAL_SAMPLE_SIZE);
+      for (var frame : frames)
+        quantizer.add(frame.argb(), step);
+
+      quantizer.reserveTransparentColorIndex();  // in case the sampling missed them
+      globalPalette = Optional.of(quantizer.palette());
+    }
+
+    var palette = globalPalette;
+    var images = frames.stream()
+      .map(frame -> CompletableFuture.supplyAsync(() -> encodeFrame(frame, width, height, palette, options), executor))
+      .toList();
+
+    var blocks = new ArrayList<LabeledBlock>();
+    applicationExtension(options).ifPresent(blocks::add);
+    try {
+      for (var image : images)
+        blocks.add(image.join());
+    } catch (CompletionException e) {
+      images.forEach(image -> image.cancel(false));
+
+      if (e.getCause() instanceof RuntimeException cause)  // ParseException included
+        throw cause;
+
+      throw e;
+    }
+
+    return new Gif(header(), screen(width, height, globalPalette), blocks);
+  }
+
+  /*
+   *  starts encoding the frame, writing out the frames before it that are done
+   *  waits for the oldest frame if too many are being encoded already
+   *  the frame's pixels mustn't be modified until the encoder is closed
+   */
+  public void add(Frame frame) throws IOException {
+    if (isClosed)
+      throw new IllegalStateException("encoder is closed");
+
+    checkFrame(frame, width, height);
+
+    if (!hasStarted) {
+      if (options.usesGlobalColorTable()) {
+        var quantizer = new Quantizer();
+        quantizer.add(frame.argb());
+        quantizer.reserveTransparentColorIndex();  // later frames might have transparent pixels
+        globalPalette = Optional.of(quantizer.palette());
+      }
+
+      start();
+    }
+
+    var palette = globalPalette;
+    pending.add(CompletableFuture.supplyAsync(() -> encodeFrame(frame, width, height, palette, options), executor));
+
+    while (!pending.isEmpty() && (pending.size() > maximumPending || pending.peek().isDone()))
+      writeNext();
+  }
+
+  // writes the frames still being encoded and the trailer, doesn't close the channel
+  @Override
+  public void close() throws IOException {
+    if (isClosed)
+      return;
+
+    isClosed = true;
+    if (!hasStarted)
+      start();
+
+    while (!pending.isEmpty())
+      writeNext();
+
+    new LabeledBlock.Trailer().writeTo(stream);
+    stream.flush();
+  }
+
+  private void start() throws IOException {
+    hasStarted = true;
+
+    header().writeTo(stream);
+    screen(width, height, globalPalette).writeTo(stream);
+
+    // can't use ifPresent since writeTo throws
+    var extension = applicationExtension(options);
+    if (extension.isPresent())
+      extension.get().writeTo(stream);
+  }
+
+  private void writeNext() throws IOException {
+    LabeledBlock.Image image;
+    try {
+      image = pending.remove().join();
+    } catch (CompletionException e) {
+      pending.forEach(frame -> frame.cancel(false));
+      pending.clear();
+
+      if (e.getCause() instanceof RuntimeException cause)  // ParseException included
+        throw cause;
+
+      throw e;
+    }
+
+    image.writeTo(stream);
+  }
+
+  private static LabeledBlock.Image encodeFrame(Frame frame, int width, int height, Optional<Palette> globalPalette, Options options) {
+    var palette = globalPalette.orElseGet(() -> {
+      var quantizer = new Quantizer();
+      quantizer.add(frame.argb());
+      return quantizer.palette();
+    });
+
+    var indices = new byte[frame.argb().length];  // checked to be width * height
+    palette.map(frame.argb(), width, options.dithers(), indices);
+    var data = encoders.get().encode(indices, palette.minimumCodeSize());
+
+    Optional<Unsigned.Byte> transparentColorIndex = palette.transparentColorIndex() >= 0
+      ? Optional.of(new Unsigned.Byte(palette.transparentColorIndex()))
+      : Optional.empty();
+
+    var graphicControlExtension = new Extension.GraphicControlExtension(
+      DisposalMethod.RESTORE_BACKGROUND, false, new Unsigned.Short(frame.delayTime()), transparentColorIndex);
+
+    return new LabeledBlock.Image(
+      Unsigned.Short.ZERO, Unsigned.Short.ZERO, new Unsigned.Short(width), new Unsigned.Short(height),
+      globalPalette.isPresent() ? Optional.empty() : Optional.of(palette.colorTable()),
+      false, palette.minimumCodeSize(), data, Optional.of(graphicControlExtension));
+  }
+
+  private static Block.Header header() {
+    return new Block.Header(Unsigned.Byte.listFrom("GIF".getBytes()), Version.VERSION_89A);
+  }
+
+  private static Block.Screen screen(int width, int height, Optional<Palette> globalPalette) {
+    return new Block.Screen(
+      new Unsigned.Short(width), new Unsigned.Short(height), Unsigned.Byte.ZERO, 7,
+      globalPalette.map(palette -> new GlobalColorTable(palette.colorTable(), Unsigned.Byte.ZERO)));
+  }
+
+  // the NETSCAPE2.0 extension browsers read the loop count from
+  private static Optional<LabeledBlock> applicationExtension(Options options) {
+    return options.loopCount().map(count -> new UnknownExtension.UnknownSpecialPurposeExtension((byte)0xff, new DataBlock(List.of(
+      new DataBlock.SubBlock("NETSCAPE2.0".getBytes()),
+      new DataBlock.SubBlock(new byte[] { 1, (byte)(count >> 0), (byte)(count >> 8) })))));
+  }
+
+  private static int checkSize(String name, int size) {
+    if (size < 1 || size > 0xffff)
+      throw new IllegalArgumentException(name + " must be between 1 and 65535 (got " + size + ")");
+
+    return size;
+  }
+
+  // each frame is held in an array, so the screen can't have more pixels than one fits
+  private static void checkPixelCount(int width, int height) {
+    if ((long)width * height > TooManyPixels.MAXIMUM_PIXEL_COUNT)
+      throw new IllegalArgumentException(width + "x" + height + " is too large, frames can have at most " + TooManyPixels.MAXIMUM_PIXEL_COUNT + " pixels");
+  }
+
+  private static void checkFrame(Frame frame, int width, int height) {
+    if (frame.argb().length != (long)width * height)
+      throw new IllegalArgumentException("frame has " + frame.argb().length + " pixels, expected " + (long)width * height);
+  }
+}
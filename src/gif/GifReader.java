@@ -0,0 +1,90 @@
+package gif;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import gif.block.Block;
+import gif.block.BlockType;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.ByteBufferInputStream;
+import gif.data.GifInputStream;
+import gif.data.ParseOptions;
+import gif.data.State;
+import gif.data.exception.ParseException;
+
+/*
+ *  reads blocks one at a time instead of collecting them like Gif does
+ *
+ *  graphic control extensions are attached to the next image the same way Gif does,
+ *  so they aren't returned on their own
+ */
+public class GifReader {
+  public final Block.Header header;
+  public final Block.Screen screen;
+
+  private final GifInputStream stream;
+  private State state;
+  private boolean reachedTrailer = false;
+
+  // streams other than GifInputStreams get buffered, so they might be read past the trailer
+  public GifReader(InputStream stream) throws IOException, ParseException {
+    this(stream, ParseOptions.STRICT);
+  }
+
+  public GifReader(InputStream stream, ParseOptions options) throws IOException, ParseException {
+    this.stream = GifInputStream.of(stream);
+    this.state  = new State(options);
+
+    try {
+      header = Block.Header.readFrom(this.stream);
+      screen = Block.Screen.readFrom(this.stream, options);
+    } catch (ParseException e) {
+      throw e.at(this.stream.offset());
+    }
+  }
+
+  public static GifReader open(Path path) throws IOException, ParseException {
+    return open(path, ParseOptions.STRICT);
+  }
+
+  public static GifReader open(Path path, ParseOptions options) throws IOException, ParseException {
+    return new GifReader(new ByteBufferInputStream(Gif.map(path)), options);
+  }
+
+  // returns the next block, ending with the trailer, then nothing
+  public Optional<LabeledBlock> next() throws IOException, ParseException {
+    try {
+      return readNext();
+    } catch (ParseException e) {
+      throw e.at(stream.offset());
+    }
+  }
+
+  // number of bytes read so far
+  public long offset() { return stream.offset(); }
+
+  private Optional<LabeledBlock> readNext() throws IOException, ParseException {
+    while (!reachedTrailer) {
+      switch (LabeledBlock.readFrom(stream, state)) {
+        case LabeledBlock.Trailer trailer -> {
+          reachedTrailer = true;
+          return Optional.of(trailer);
+        }
+        case Extension.GraphicControlExtension graphicControlExtension -> {
+          state.graphicControlExtension = Optional.of(graphicControlExtension);
+        }
+        case LabeledBlock block -> {
+          if (block instanceof BlockType.GraphicRenderingBlock)
+            state = state.next();  // clear control blocks
+
+          return Optional.of(block);
+        }
+      }
+    }
+
+    return Optional.empty();
+  }
+}
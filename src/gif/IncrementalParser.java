@@ -0,0 +1,318 @@
+package gif;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+import gif.block.Block;
+import gif.block.BlockType;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.ByteBufferInputStream;
+import gif.data.ParseOptions;
+import gif.data.State;
+import gif.data.exception.InvalidValue;
+import gif.data.exception.ParseException;
+import gif.data.exception.UnexpectedEndOfStream;
+import gif.data.format.ByteFormatter;
+import gif.lzw.BitStream;
+import gif.lzw.Decoder;
+
+/*
+ *  parses a file from bytes pushed into it as they arrive, instead of pulling them from a stream
+ *
+ *  feed never blocks: the bytes of the structure being read are collected until it's complete,
+ *  then parsed by the same readers GifReader uses, and the blocks are handed to the listener
+ *  in the order GifReader.next would return them
+ *
+ *  image data goes into a bit stream a sub-block at a time, and with decodesImages the color
+ *  indices are decoded as each sub-block arrives, so a frame can be shown before it's complete
+ *
+ *  not thread-safe, the listener is called on the thread calling feed
+ */
+public class IncrementalParser {
+  public interface Listener {
+    // the header, logical screen descriptor and global color table have arrived
+    default void screen(Block.Header header, Block.Screen screen) {}
+
+    // an image descriptor has arrived, its data is next
+    default void imageStarted(LabeledBlock.Image.Descriptor descriptor) {}
+
+    /*
+     *  more of the image being read was decoded, indices holds the color index of every pixel
+     *  in display order and is filled in as its data arrives (in passes if it's interlaced)
+     *  only called with decodesImages
+     */
+    default void imageProgress(LabeledBlock.Image.Descriptor descriptor, byte[] indices, int decodedCount) {}
+
+    /*
+     *  the data of the image being read couldn't be decoded, so there's no more progress on it
+     *  parsing goes on, the same way Gif doesn't look at image data until it's decoded
+     */
+    default void imageFailed(LabeledBlock.Image.Descriptor descriptor, ParseException e) {}
+
+    // a block is complete, graphic control extensions come attached to their image instead
+    default void block(LabeledBlock block) {}
+  }
+
+  private enum Step {
+    HEADER,                // header and logical screen descriptor
+    GLOBAL_COLOR_TABLE,
+    LABEL,
+    EXTENSION,             // extension label, then its data block
+    EXTENSION_SUB_BLOCK,
+    IMAGE_DESCRIPTOR,      // image descriptor fields up to the packed fields
+    IMAGE_COLOR_TABLE,     // local color table and minimum code size
+    IMAGE_SUB_BLOCK_SIZE,
+    IMAGE_SUB_BLOCK,
+    DONE,
+    FAILED
+  }
+
+  private static final int HEADER_SIZE = 6 + 7;
+  private static final int IMAGE_DESCRIPTOR_SIZE = 9;  // not counting the image separator
+
+  private final Listener listener;
+  private final ParseOptions options;
+  private final boolean decodesImages;
+
+  private Step step = Step.HEADER;
+  private long offset = 0;  // bytes fed so far that have been used
+  private State state;
+
+  // bytes of the structure being read, until there are needed of them
+  private byte[] pending = new byte[256];
+  private int pendingLength = 0;
+  private int needed = HEADER_SIZE;
+  private long pendingStart = 0;  // where pending starts in the file
+
+  // the stream the structure is being parsed from, so exceptions get the offset it got to
+  private ByteBufferInputStream stream;
+
+  // the image being read
+  private LabeledBlock.Image.Descriptor descriptor;
+  private BitStream imageData;
+  private byte[] indices;
+  private boolean isDecoding;
+  private final Decoder decoder = new Decoder();
+
+  public IncrementalParser(Listener listener) {
+    this(listener, ParseOptions.STRICT, false);
+  }
+
+  public IncrementalParser(Listener listener, ParseOptions options, boolean decodesImages) {
+    this.listener      = Objects.requireNonNull(listener);
+    this.options       = Objects.requireNonNull(options);
+    this.decodesImages = decodesImages;
+    this.state         = new State(options);
+  }
+
+  // number of bytes used so far, the ones fed after the trailer aren't counted
+  public long offset() { return offset; }
+
+  public boolean isDone() { return step == Step.DONE; }
+
+  /*
+   *  parses as much as the bytes fed so far allow, leaving src's position at its limit
+   *  bytes after the trailer are ignored
+   *  after a parse exception the parser can't be used anymore
+   */
+  public void feed(ByteBuffer src) throws ParseException {
+    if (step == Step.FAILED)
+      throw new IllegalStateException("parser failed earlier");
+
+    try {
+      while (src.hasRemaining() && step != Step.DONE) {
+        var length = Math.min(src.remaining(), needed - pendingLength);
+        ensureCapacity(needed);
+        src.get(pending, pendingLength, length);
+        pendingLength += length;
+        offset += length;
+
+        if (pendingLength == needed)
+          advance();
+      }
+
+      src.position(src.limit());
+    } catch (ParseException e) {
+      step = Step.FAILED;
+      throw e.at(stream != null ? stream.offset() : offset);
+    } catch (IOException e) {
+      // only ever reading from byte buffers
+      throw new AssertionError(e);
+    }
+  }
+
+  public void feed(byte[] bytes, int offset, int length) throws ParseException {
+    feed(ByteBuffer.wrap(bytes, offset, length));
+  }
+
+  // call once there are no more bytes, throws if the trailer wasn't reached
+  public void end() throws ParseException {
+    if (step != Step.DONE && step != Step.FAILED) {
+      step = Step.FAILED;
+      throw new UnexpectedEndOfStream().at(offset);
+    }
+  }
+
+  // handles the structure in pending once all of it has arrived
+  private void advance() throws IOException, ParseException {
+    switch (step) {
+      case HEADER -> {
+        var packedFields = Byte.toUnsignedInt(pending[10]);
+        if ((packedFields >> 7) == 1) {
+          expect(Step.GLOBAL_COLOR_TABLE, 3 * (1 << ((packedFields & 7) + 1)));
+          return;
+        }
+
+        readScreen();
+      }
+      case GLOBAL_COLOR_TABLE -> readScreen();
+      case LABEL -> {
+        var label = pending[0];
+        switch (label) {
+          case Extension.label -> expect(Step.EXTENSION, 2);  // extension label and first sub-block size
+          case LabeledBlock.Image.label -> expect(Step.IMAGE_DESCRIPTOR, IMAGE_DESCRIPTOR_SIZE);
+          case LabeledBlock.Trailer.label -> {
+            step = Step.DONE;
+            listener.block(new LabeledBlock.Trailer());
+          }
+          default ->
+            throw new InvalidValue(ByteFormatter::format, "label", label, Extension.label, LabeledBlock.Image.label, LabeledBlock.Trailer.label);
+        }
+      }
+      case EXTENSION, EXTENSION_SUB_BLOCK -> {
+        // the extension is kept whole in pending, up to the size of the next sub-block
+        var size = Byte.toUnsignedInt(pending[pendingLength - 1]);
+        if (size != 0) {
+          step = Step.EXTENSION_SUB_BLOCK;
+          needed = pendingLength + size + 1;
+          return;
+        }
+
+        // pending is reused, so the extension's data block can't be a slice of it
+        stream = new ByteBufferInputStream(ByteBuffer.wrap(Arrays.copyOf(pending, pendingLength)), pendingStart);
+        var extension = Extension.readFrom(stream);
+        expectLabel();
+
+        if (extension instanceof Extension.GraphicControlExtension graphicControlExtension) {
+          state.graphicControlExtension = Optional.of(graphicControlExtension);
+          return;
+        }
+
+        if (extension instanceof BlockType.GraphicRenderingBlock)
+          state = state.next();  // clear control blocks
+
+        listener.block(extension);
+      }
+      case IMAGE_DESCRIPTOR -> {
+        // the rest is read into pending after the descriptor, so they're parsed together
+        var packedFields = Byte.toUnsignedInt(pending[8]);
+        var colorTableSize = ((packedFields >> 7) & 1) == 1 ? 3 * (1 << ((packedFields & 7) + 1)) : 0;
+
+        step = Step.IMAGE_COLOR_TABLE;
+        needed = IMAGE_DESCRIPTOR_SIZE + colorTableSize + 1;  // minimum code size
+      }
+      case IMAGE_COLOR_TABLE -> {
+        descriptor = LabeledBlock.Image.readDescriptorFrom(pendingStream(), state);
+        imageData = new BitStream();
+
+        var width  = descriptor.width ().intValue();
+        var height = descriptor.height().intValue();
+        isDecoding = decodesImages;
+        if (isDecoding) {
+          indices = new byte[width * height];
+          decoder.begin(imageData, descriptor.minimumCodeSize(), indices, 0, width, height, width, descriptor.isInterlaced());
+        }
+
+        listener.imageStarted(descriptor);
+        expect(Step.IMAGE_SUB_BLOCK_SIZE, 1);
+      }
+      case IMAGE_SUB_BLOCK_SIZE -> {
+        var size = Byte.toUnsignedInt(pending[0]);
+        if (size != 0) {
+          expect(Step.IMAGE_SUB_BLOCK, size);
+          return;
+        }
+
+        var image = descriptor.withData(imageData.close());
+        if (isDecoding)
+          decode(true);
+
+        descriptor = null;
+        imageData  = null;
+        indices    = null;
+        state      = state.next();  // clear control blocks
+        expectLabel();
+
+        listener.block(image);
+      }
+      case IMAGE_SUB_BLOCK -> {
+        imageData.append(ByteBuffer.wrap(pending, 0, pendingLength));
+        if (isDecoding)
+          decode(false);
+
+        expect(Step.IMAGE_SUB_BLOCK_SIZE, 1);
+      }
+      case DONE, FAILED ->
+        throw new IllegalStateException("unreachable");
+    }
+  }
+
+  private void decode(boolean isLast) {
+    var decodedCount = decoder.decodedCount();
+    try {
+      if (isLast) {
+        decoder.end();
+      } else {
+        decoder.decodeAvailable();
+      }
+    } catch (ParseException e) {
+      isDecoding = false;
+      listener.imageFailed(descriptor, e);
+      return;
+    }
+
+    // the last sub-block has usually been decoded already, with nothing left for end to add
+    if (decoder.decodedCount() != decodedCount)
+      listener.imageProgress(descriptor, indices, decoder.decodedCount());
+  }
+
+  private void readScreen() throws IOException, ParseException {
+    var stream = pendingStream();
+    var header = Block.Header.readFrom(stream);
+    var screen = Block.Screen.readFrom(stream, options);
+    expectLabel();
+
+    listener.screen(header, screen);
+  }
+
+  // starts collecting the next structure, except for the global color table, which is read along with the screen
+  private void expect(Step step, int byteCount) {
+    this.step = step;
+    if (step != Step.GLOBAL_COLOR_TABLE) {
+      pendingLength = 0;
+      pendingStart  = offset;
+    }
+
+    stream = null;
+
+    needed = pendingLength + byteCount;
+  }
+
+  private void expectLabel() {
+    expect(Step.LABEL, 1);
+  }
+
+  // offsets are counted from where the structure starts in the file, like GifReader's
+  private ByteBufferInputStream pendingStream() {
+    return stream = new ByteBufferInputStream(ByteBuffer.wrap(pending, 0, pendingLength), pendingStart);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > pending.length)
+      pending = Arrays.copyOf(pending, Math.max(capacity, 2 * pending.length));
+  }
+}
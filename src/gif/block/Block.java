@@ -9,6 +9,7 @@ import java.util.Objects;
 import java.util.Optional;
 
 import gif.data.GlobalColorTable;
+import gif.data.ParseOptions;
 import gif.data.Serializable;
 import gif.data.Unsigned;
 import gif.data.Version;
@@ -56,10 +57,14 @@ public sealed interface Block extends Serializable permits LabeledBlock, Block.H
       this.height           = Objects.requireNonNull(height);
       this.pixelAspectRatio = Objects.requireNonNull(pixelAspectRatio);
       this.colorResolution  = OutOfBounds.check("color resolution", colorResolution, 0, 7);
-      this.globalColorTable = globalColorTable.map(Objects::requireNonNull);
+      this.globalColorTable = Objects.requireNonNull(globalColorTable);
     }
 
     public static Screen readFrom(InputStream stream) throws IOException, UnexpectedEndOfStream {
+      return readFrom(stream, ParseOptions.STRICT);
+    }
+
+    public static Screen readFrom(InputStream stream, ParseOptions options) throws IOException, UnexpectedEndOfStream {
       var width  = Unsigned.Short.readFrom(stream);
       var height = Unsigned.Short.readFrom(stream);
 
@@ -76,12 +81,12 @@ public sealed interface Block extends Serializable permits LabeledBlock, Block.H
       Optional<GlobalColorTable> globalColorTable = Optional.empty();
       if (hasGlobalColorTable) {
         globalColorTable = Optional.of(GlobalColorTable.readFrom(stream, packedSize, isSorted, backgroundColorIndex));
-      } else {
+      } else if (!options.isTrusted()) {
         if (!backgroundColorIndex.equals(Unsigned.Byte.ZERO))
-          System.err.println("WARNING: missing global color table, but background color index specified");
+          options.warn(stream, "missing global color table, but background color index specified");
 
         if (isSorted)
-          System.err.println("WARNING: missing global color table marked as sorted (not wrong but still)");
+          options.warn(stream, "missing global color table marked as sorted (not wrong but still)");
 
         /*
         *   "Even if there is no Global Color Table specified, set this
@@ -93,7 +98,7 @@ public sealed interface Block extends Serializable permits LabeledBlock, Block.H
         *  alternatively the global color table could be moved out of Screen
         */
         if (packedSize != 0)
-          System.err.println("WARNING: missing global color table has nonzero packed size");
+          options.warn(stream, "missing global color table has nonzero packed size");
       }
 
       return new Screen(width, height, pixelAspectRatio, colorResolution, globalColorTable);
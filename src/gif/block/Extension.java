@@ -1,9 +1,9 @@
 package gif.block;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteOrder;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -52,25 +52,25 @@ public sealed interface Extension extends LabeledBlock permits UnknownExtension,
       this.disposalMethod        = Objects.requireNonNull(disposalMethod);
       this.waitsForUserInput     = waitsForUserInput;
       this.delayTime             = Objects.requireNonNull(delayTime);
-      this.transparentColorIndex = transparentColorIndex.map(Objects::requireNonNull);
+      this.transparentColorIndex = Objects.requireNonNull(transparentColorIndex);
     }
 
     public static GraphicControlExtension from(DataBlock data) throws ParseException {
-      InvalidValue.check("subblock count", data.subBlocks().size(), 1);
+      InvalidValue.check("subblock count", data.subBlockCount(), 1);
+      InvalidValue.check("subblock size", data.totalSize(), 4);
 
-      var bytes = data.subBlocks().get(0).data();
-      InvalidValue.check("subblock size", bytes.size(), 4);
+      // read straight from the block instead of going through its sub-block and byte lists
+      var bytes = data.asByteBuffer();
+      var delayTime = new Unsigned.Short(bytes.order(ByteOrder.LITTLE_ENDIAN).getShort(2));
 
-      var delayTime = Unsigned.Short.fromBytes(bytes.get(1), bytes.get(2));
-
-      var packedFields = bytes.get(0).intValue();
+      var packedFields = Byte.toUnsignedInt(bytes.get(1));
       var hasTransparencyIndex =                    ((packedFields >> 0) & 1) == 1;
       var waitsForUserInput    =                    ((packedFields >> 1) & 1) == 1;
       var disposalMethod       = DisposalMethod.from((packedFields >> 2) & 7);
 
       // var doesn't work here
       Optional<Unsigned.Byte> transparentColorIndex = hasTransparencyIndex
-        ? Optional.of(bytes.get(3))
+        ? Optional.of(new Unsigned.Byte(bytes.get(4)))
         : Optional.empty();
 
       return new GraphicControlExtension(disposalMethod, waitsForUserInput, delayTime, transparentColorIndex);
@@ -80,17 +80,33 @@ public sealed interface Extension extends LabeledBlock permits UnknownExtension,
     public byte label() { return GraphicControlExtension.label; }
 
     public DataBlock data() {
-      var result = new ByteArrayOutputStream(4);
+      return new DataBlock(List.of(new DataBlock.SubBlock(encodedFields())));
+    }
 
+    private byte[] encodedFields() {
       var packedFields = (transparentColorIndex.isPresent() ? (1 << 0) : 0)
                        | (waitsForUserInput                 ? (1 << 1) : 0)
                        | (disposalMethod.encodedValue()          << 2     );
-      result.write(packedFields);
 
-      delayTime.writeTo(result);
-      transparentColorIndex.orElse(Unsigned.Byte.ZERO).writeTo(result);
+      var delayTime = this.delayTime.intValue();
+      return new byte[] {
+        (byte)packedFields,
+        (byte)(delayTime >> 0),
+        (byte)(delayTime >> 8),
+        (byte)transparentColorIndex.orElse(Unsigned.Byte.ZERO).intValue()
+      };
+    }
 
-      return new DataBlock(List.of(new DataBlock.SubBlock(Unsigned.Byte.listFrom(result.toByteArray()))));
+    // written directly instead of going through data(), which would build a data block every time
+    @Override
+    public void writeTo(OutputStream stream) throws IOException {
+      var fields = encodedFields();
+
+      stream.write(Extension.label);
+      stream.write(GraphicControlExtension.label);
+      stream.write(fields.length);
+      stream.write(fields);
+      stream.write(0);  // block terminator
     }
   }
 }
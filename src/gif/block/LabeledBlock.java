@@ -3,11 +3,13 @@ package gif.block;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
 
 import gif.data.ColorTable;
 import gif.data.DataBlock;
+import gif.data.GifInputStream;
 import gif.data.GlobalColorTable;
 import gif.data.Pixel;
 import gif.data.State;
@@ -16,21 +18,37 @@ import gif.data.exception.InvalidValue;
 import gif.data.exception.OutOfBounds;
 import gif.data.exception.ParseException;
 import gif.data.format.ByteFormatter;
+import gif.jfr.DecodeEvent;
+import gif.jfr.ReadBlockEvent;
 import gif.lzw.BitStream;
-import gif.lzw.Lzw;
+import gif.lzw.Decoder;
 
 public sealed interface LabeledBlock extends Block permits Extension, LabeledBlock.Image, LabeledBlock.Trailer {
   byte label();
 
   public static LabeledBlock readFrom(InputStream stream, State state) throws IOException, ParseException {
+    var event = new ReadBlockEvent();
+    event.begin();
+
+    var offset = stream instanceof GifInputStream gifStream ? gifStream.offset() : -1;
+
     var label = Unsigned.Byte.readFrom(stream).byteValue();
-    return switch (label) {
+    var block = switch (label) {
       case Extension.label -> Extension.readFrom(stream);
       case     Image.label -> Image.readFrom(stream, state);
       case   Trailer.label -> new Trailer();
       default ->
         throw new InvalidValue(ByteFormatter::format, "label", label, Extension.label, Image.label, Trailer.label);
     };
+
+    if (event.shouldCommit()) {
+      event.label  = block instanceof Extension extension ? extension.label() : label;
+      event.offset = offset;
+      event.size   = offset < 0 ? -1 : ((GifInputStream)stream).offset() - offset;
+      event.commit();
+    }
+
+    return block;
   }
 
   record Image(
@@ -51,14 +69,35 @@ public sealed interface LabeledBlock extends Block permits Extension, LabeledBlo
       this.top                     = Objects.requireNonNull(top   );
       this.width                   = Objects.requireNonNull(width );
       this.height                  = Objects.requireNonNull(height);
-      this.colorTable              = colorTable.map(Objects::requireNonNull);
+      this.colorTable              = Objects.requireNonNull(colorTable);
       this.isInterlaced            = isInterlaced;
       this.minimumCodeSize         = OutOfBounds.check("minimum code size", minimumCodeSize, 0, 11);  // minimum size of 11 gives initial size of 12, which is the max
       this.data                    = Objects.requireNonNull(data);
-      this.graphicControlExtension = graphicControlExtension.map(Objects::requireNonNull);
+      this.graphicControlExtension = Objects.requireNonNull(graphicControlExtension);
+    }
+
+    // everything in an image up to its data, for readers that get the data some other way
+    public record Descriptor(
+      Unsigned.Short left,
+      Unsigned.Short top,
+      Unsigned.Short width,
+      Unsigned.Short height,
+      Optional<ColorTable> colorTable,
+      boolean isInterlaced,
+      int minimumCodeSize,
+      Optional<Extension.GraphicControlExtension> graphicControlExtension
+    ) {
+      public Image withData(DataBlock data) {
+        return new Image(left, top, width, height, colorTable, isInterlaced, minimumCodeSize, data, graphicControlExtension);
+      }
     }
 
     public static Image readFrom(InputStream stream, State state) throws IOException, ParseException {
+      return readDescriptorFrom(stream, state).withData(DataBlock.readFrom(stream));
+    }
+
+    // reads the image descriptor, local color table and minimum code size, stopping at the image data
+    public static Descriptor readDescriptorFrom(InputStream stream, State state) throws IOException, ParseException {
       var left   = Unsigned.Short.readFrom(stream);
       var top    = Unsigned.Short.readFrom(stream);
       var width  = Unsigned.Short.readFrom(stream);
@@ -73,59 +112,131 @@ public sealed interface LabeledBlock extends Block permits Extension, LabeledBlo
       var packedSize    =  (packedFields >> 0) & 7;
       Optional<ColorTable> colorTable = Optional.empty();
       if (hasColorTable) {
-        var table = ColorTable.readFrom(stream, packedSize, isSorted);
-        state.graphicControlExtension
-          .flatMap(Extension.GraphicControlExtension::transparentColorIndex)
-          .map(Unsigned.Byte::intValue)
-          .map(index -> OutOfBounds.check("transparent color index", index, 0, table.colors().size() - 1));
+        var table = state.intern(ColorTable.readFrom(stream, packedSize, isSorted));
+        if (!state.options.isTrusted())
+          state.graphicControlExtension
+            .flatMap(Extension.GraphicControlExtension::transparentColorIndex)
+            .map(Unsigned.Byte::intValue)
+            .map(index -> OutOfBounds.check("transparent color index", index, 0, table.size() - 1));
 
         colorTable = Optional.of(table);
-      } else {
+      } else if (!state.options.isTrusted()) {
         if (isSorted)
-          System.err.println("WARNING: missing local color table marked as sorted (not wrong but still)");
+          state.options.warn(stream, "missing local color table marked as sorted (not wrong but still)");
 
         if (packedSize != 0)
-          System.err.println("WARNING: missing local color table has nonzero packed size");
+          state.options.warn(stream, "missing local color table has nonzero packed size");
       }
 
-      var minimumCodeSize = Unsigned.Byte.readFrom(stream).intValue();
-      var data = DataBlock.readFrom(stream);
+      var minimumCodeSize = OutOfBounds.check("minimum code size", Unsigned.Byte.readFrom(stream).intValue(), 0, 11);
 
       var graphicControlExtension = state.graphicControlExtension;
 
-      return new Image(left, top, width, height, colorTable, isInterlaced, minimumCodeSize, data, graphicControlExtension);
+      return new Descriptor(left, top, width, height, colorTable, isInterlaced, minimumCodeSize, graphicControlExtension);
     }
 
     @Override
     public byte label() { return Image.label; }
 
     public Pixel[][] getPixels(Optional<GlobalColorTable> globalColorTable) throws ParseException {
-      var indices = Lzw.decode(new BitStream(data), minimumCodeSize);
-      InvalidValue.check("image data pixel count", indices.size(), width.intValue() * height.intValue());
+      var event = new DecodeEvent();
+      event.begin();
 
-      var colors = this.colorTable
-        .or(() -> globalColorTable.map(GlobalColorTable::colorTable))
-        .map(ColorTable::colors)
-        .orElseThrow(() -> new ParseException("no color table"));
+      // decoded without an event of its own, so the time isn't counted twice
+      var indices = new byte[width.intValue() * height.intValue()];
+      decode(new Decoder(), indices, 0, width.intValue());
 
-      var transparentColorIndex = graphicControlExtension
-        .flatMap(Extension.GraphicControlExtension::transparentColorIndex)
-        .map(Unsigned.Byte::intValue)
-        .orElse(-1);
+      var result = getPixels(globalColorTable, indices);
+
+      commit(event, "pixels");
+      return result;
+    }
+
+    // builds the pixels from indices that were already decoded, row by row
+    public Pixel[][] getPixels(Optional<GlobalColorTable> globalColorTable, byte[] indices) throws ParseException {
+      var colors = colorTable(globalColorTable).colors();
+      var transparentColorIndex = transparentColorIndex();
 
       var possibleValues = new Pixel[colors.size()];
       for (var i=0; i < colors.size(); ++i)
         possibleValues[i] = new Pixel(colors.get(i), i == transparentColorIndex);
 
-      var indicesLeft = indices.iterator();
+      var i = 0;
       var result = new Pixel[height.intValue()][width.intValue()];
       for (var row : result)
         for (var x=0; x < width.intValue(); ++x)
-          row[x] = possibleValues[indicesLeft.next()];
+          row[x] = possibleValues[Byte.toUnsignedInt(indices[i++])];
 
       return result;
     }
 
+    // writes the color index of every pixel to dst, row by row (in display order, even if interlaced)
+    public void decodeIndices(byte[] dst) throws ParseException {
+      decodeIndices(new Decoder(), dst, 0, width.intValue());
+    }
+
+    // writes row y of the image to dst starting at offset + y * stride
+    public void decodeIndices(Decoder decoder, byte[] dst, int offset, int stride) throws ParseException {
+      var event = new DecodeEvent();
+      event.begin();
+
+      decode(decoder, dst, offset, stride);
+
+      commit(event, "indices");
+    }
+
+    private void decode(Decoder decoder, byte[] dst, int offset, int stride) throws ParseException {
+      decoder.decode(new BitStream(data), minimumCodeSize, dst, offset, width.intValue(), height.intValue(), stride, isInterlaced);
+    }
+
+    public void decodeArgb(Optional<GlobalColorTable> globalColorTable, int[] dst, int stride) throws ParseException {
+      decodeArgb(new Decoder(), globalColorTable, dst, 0, stride);
+    }
+
+    // like decodeIndices, with every index resolved to its color through palette
+    public void decodeArgb(Decoder decoder, Optional<GlobalColorTable> globalColorTable, int[] dst, int offset, int stride) throws ParseException {
+      // indices past the color table stay transparent
+      var palette = colorTable(globalColorTable).argb(transparentColorIndex());
+      if (palette.length < 1 << minimumCodeSize)
+        palette = Arrays.copyOf(palette, 1 << minimumCodeSize);
+
+      var event = new DecodeEvent();
+      event.begin();
+
+      decoder.decode(new BitStream(data), minimumCodeSize, dst, offset, width.intValue(), height.intValue(), stride, isInterlaced, palette);
+
+      commit(event, "argb");
+    }
+
+    private void commit(DecodeEvent event, String output) {
+      if (!event.shouldCommit())
+        return;
+
+      event.output          = output;
+      event.width           = width .intValue();
+      event.height          = height.intValue();
+      event.isInterlaced    = isInterlaced;
+      event.minimumCodeSize = minimumCodeSize;
+      event.compressedBytes = data.totalSize();
+      event.decodedBytes    = (long)width.intValue() * height.intValue();
+      event.commit();
+    }
+
+    // the local color table, or the global one if there's none
+    public ColorTable colorTable(Optional<GlobalColorTable> globalColorTable) throws ParseException {
+      return this.colorTable
+        .or(() -> globalColorTable.map(GlobalColorTable::colorTable))
+        .orElseThrow(() -> new ParseException("no color table"));
+    }
+
+    // -1 if there's none
+    public int transparentColorIndex() {
+      return graphicControlExtension
+        .flatMap(Extension.GraphicControlExtension::transparentColorIndex)
+        .map(Unsigned.Byte::intValue)
+        .orElse(-1);
+    }
+
     @Override
     public void writeTo(OutputStream stream) throws IOException {
       // can't use ifPresent since writeTo throws
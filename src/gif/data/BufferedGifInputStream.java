@@ -0,0 +1,137 @@
+package gif.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+import gif.data.exception.UnexpectedEndOfStream;
+
+/*
+ *  reads the underlying stream a buffer at a time
+ *
+ *  may read past the end of the GIF, so the underlying stream shouldn't be used afterwards
+ */
+public class BufferedGifInputStream extends GifInputStream {
+  private static final int DEFAULT_BUFFER_SIZE = 1 << 13;
+
+  private final InputStream stream;
+  private final byte[] buffer;
+  private int position = 0;
+  private int limit = 0;
+  private long bufferOffset = 0;  // offset of buffer[0] in the file
+
+  public BufferedGifInputStream(InputStream stream) {
+    this(stream, DEFAULT_BUFFER_SIZE);
+  }
+
+  public BufferedGifInputStream(InputStream stream, int bufferSize) {
+    this.stream = Objects.requireNonNull(stream);
+    this.buffer = new byte[bufferSize];
+  }
+
+  @Override
+  public long offset() { return bufferOffset + position; }
+
+  // returns false at the end of the stream
+  private boolean fill() throws IOException {
+    bufferOffset += limit;
+    position = 0;
+    limit = 0;
+
+    var count = stream.read(buffer);
+    if (count <= 0)
+      return false;
+
+    limit = count;
+    return true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (position == limit && !fill())
+      return -1;
+
+    return Byte.toUnsignedInt(buffer[position++]);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    Objects.checkFromIndexSize(off, len, b.length);
+    if (len == 0)
+      return 0;
+
+    if (position == limit) {
+      // large reads go straight to the destination instead of through the buffer
+      if (len >= buffer.length) {
+        bufferOffset += limit;
+        position = 0;
+        limit = 0;
+
+        var count = stream.read(b, off, len);
+        if (count > 0)
+          bufferOffset += count;
+
+        return count;
+      }
+
+      if (!fill())
+        return -1;
+    }
+
+    len = Math.min(len, limit - position);
+    System.arraycopy(buffer, position, b, off, len);
+    position += len;
+
+    return len;
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException, UnexpectedEndOfStream {
+    if (position == limit && !fill())
+      throw new UnexpectedEndOfStream();
+
+    return Byte.toUnsignedInt(buffer[position++]);
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException, UnexpectedEndOfStream {
+    if (limit - position < 2)
+      return super.readUnsignedShort();
+
+    var lo = Byte.toUnsignedInt(buffer[position++]);
+    var hi = Byte.toUnsignedInt(buffer[position++]);
+    return (hi << 8) | lo;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0)
+      return 0;
+
+    if (position < limit) {
+      var skipped = (int)Math.min(n, limit - position);
+      position += skipped;
+
+      return skipped;
+    }
+
+    bufferOffset += limit;
+    position = 0;
+    limit = 0;
+
+    var skipped = stream.skip(n);
+    bufferOffset += skipped;
+
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (limit - position) + stream.available();
+  }
+
+  @Override
+  public void close() throws IOException {
+    stream.close();
+  }
+}
@@ -0,0 +1,87 @@
+package gif.data;
+
+import java.nio.ByteBuffer;
+
+import gif.data.exception.UnexpectedEndOfStream;
+
+/*
+ *  input stream over a byte buffer (usually a mapped file)
+ *
+ *  readers that know about it can take slices of the buffer instead of copying bytes out of it
+ */
+public class ByteBufferInputStream extends GifInputStream {
+  private final ByteBuffer buffer;
+  private final long startOffset;
+
+  public ByteBufferInputStream(ByteBuffer buffer) {
+    this(buffer, 0);
+  }
+
+  // for buffers holding part of a file, offset counts from where that part starts in it
+  public ByteBufferInputStream(ByteBuffer buffer, long startOffset) {
+    this.buffer      = buffer.slice();
+    this.startOffset = startOffset;
+  }
+
+  public int position() { return buffer.position(); }
+
+  public void position(int position) { buffer.position(position); }
+
+  public int size() { return buffer.limit(); }
+
+  @Override
+  public long offset() { return startOffset + buffer.position(); }
+
+  // view of length bytes starting at start, which doesn't move the stream
+  public ByteBuffer slice(int start, int length) {
+    return buffer.slice(start, length);
+  }
+
+  @Override
+  public int read() {
+    return buffer.hasRemaining() ? Byte.toUnsignedInt(buffer.get()) : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0)
+      return 0;
+
+    if (!buffer.hasRemaining())
+      return -1;
+
+    len = Math.min(len, buffer.remaining());
+    buffer.get(b, off, len);
+
+    return len;
+  }
+
+  @Override
+  public int readUnsignedByte() throws UnexpectedEndOfStream {
+    if (!buffer.hasRemaining())
+      throw new UnexpectedEndOfStream();
+
+    return Byte.toUnsignedInt(buffer.get());
+  }
+
+  @Override
+  public int readUnsignedShort() throws UnexpectedEndOfStream {
+    if (buffer.remaining() < 2)
+      throw new UnexpectedEndOfStream();
+
+    var lo = Byte.toUnsignedInt(buffer.get());
+    var hi = Byte.toUnsignedInt(buffer.get());
+    return (hi << 8) | lo;
+  }
+
+  @Override
+  public long skip(long n) {
+    var skipped = (int)Math.max(0, Math.min(n, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+
+    return skipped;
+  }
+
+  @Override
+  public int available() { return buffer.remaining(); }
+}
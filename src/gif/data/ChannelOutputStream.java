@@ -0,0 +1,101 @@
+package gif.data;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/*
+ *  output stream that collects small writes in a direct buffer and writes it to a channel when full
+ *
+ *  writers that know about it can hand over whole buffers, direct ones (like mapped data blocks)
+ *  go to the channel along with the pending bytes in a single gathering write instead of being copied
+ *
+ *  the buffer can be passed in so it's reused across streams
+ */
+public class ChannelOutputStream extends OutputStream {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private final ByteBuffer[] buffers = new ByteBuffer[2];  // for gathering writes
+
+  public ChannelOutputStream(WritableByteChannel channel) {
+    this(channel, ByteBuffer.allocateDirect(DEFAULT_BUFFER_SIZE));
+  }
+
+  public ChannelOutputStream(WritableByteChannel channel, ByteBuffer buffer) {
+    this.channel = channel;
+    this.buffer  = buffer.clear();
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    if (!buffer.hasRemaining())
+      drain();
+
+    buffer.put((byte)b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    write(ByteBuffer.wrap(b, off, len));
+  }
+
+  // writes the remaining bytes of src, leaving its position at its limit
+  public void write(ByteBuffer src) throws IOException {
+    if (src.remaining() <= buffer.remaining()) {
+      buffer.put(src);
+      return;
+    }
+
+    // copying a heap buffer here is the same copy the channel would make into a temporary direct buffer
+    if (!src.isDirect() || !(channel instanceof GatheringByteChannel gatheringChannel)) {
+      while (src.hasRemaining()) {
+        if (!buffer.hasRemaining())
+          drain();
+
+        var length = Math.min(src.remaining(), buffer.remaining());
+        buffer.put(buffer.position(), src, src.position(), length);
+        buffer.position(buffer.position() + length);
+        src.position(src.position() + length);
+      }
+
+      return;
+    }
+
+    buffer.flip();
+    buffers[0] = buffer;
+    buffers[1] = src;
+    try {
+      while (src.hasRemaining())
+        gatheringChannel.write(buffers);
+    } finally {
+      buffers[1] = null;
+      buffer.clear();
+    }
+  }
+
+  private void drain() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining())
+      channel.write(buffer);
+
+    buffer.clear();
+  }
+
+  @Override
+  public void flush() throws IOException {
+    drain();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+}
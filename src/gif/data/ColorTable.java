@@ -3,51 +3,170 @@ package gif.data;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import gif.data.exception.InvalidValue;
 import gif.data.exception.UnexpectedEndOfStream;
 
-public record ColorTable(List<Color> colors, boolean isSorted) implements Serializable {
+/*
+ *  colors are kept packed as 0xRRGGBB
+ *
+ *  the ARGB palette for each transparent color index is built the first time it's asked for
+ *  and shared from then on
+ */
+public final class ColorTable implements Serializable {
+  private static final int PALETTE_SIZE = 256;
+
+  private final int[] rgb;
+  private final boolean isSorted;
+
+  // palettes[i + 1] is the palette with transparent color index i, palettes[0] is the one without
+  private final AtomicReferenceArray<int[]> palettes;
+
   public ColorTable(List<Color> colors, boolean isSorted) {
-    var sizeIsAValidPowerOf2 = false;
-    for (var i=1; i <= 8; ++i)
-      if (colors.size() == (1 << i))
-        sizeIsAValidPowerOf2 = true;
+    this(pack(colors), isSorted);
+  }
+
+  // colors packed as 0xRRGGBB, the top byte is ignored
+  public static ColorTable of(int[] rgb, boolean isSorted) {
+    checkSize(rgb.length);
+
+    var packed = new int[rgb.length];
+    for (var i=0; i < rgb.length; ++i)
+      packed[i] = rgb[i] & 0xffffff;
+
+    return new ColorTable(packed, isSorted);
+  }
+
+  // tables read from a stream always have a valid size, so only the ones passed in get checked
+  private ColorTable(int[] rgb, boolean isSorted) {
+    this.rgb      = rgb;
+    this.isSorted = isSorted;
+    this.palettes = new AtomicReferenceArray<>(rgb.length + 1);
+  }
 
+  private static void checkSize(int size) {
+    var sizeIsAValidPowerOf2 = 2 <= size && size <= PALETTE_SIZE && Integer.bitCount(size) == 1;
     if (!sizeIsAValidPowerOf2)
       throw new InvalidValue(
-        "color table size must be a power of 2 between 2 and 256 (got " + colors.size() + ")");
+        "color table size must be a power of 2 between 2 and 256 (got " + size + ")");
+  }
 
-    colors.stream().forEach(Objects::requireNonNull);
+  private static int[] pack(List<Color> colors) {
+    checkSize(colors.size());
 
-    this.colors   = List.copyOf(colors);
-    this.isSorted = isSorted;
+    var rgb = new int[colors.size()];
+    for (var i=0; i < rgb.length; ++i) {
+      var color = Objects.requireNonNull(colors.get(i));
+      rgb[i] = (color.red  ().intValue() << 16)
+             | (color.green().intValue() <<  8)
+             | (color.blue ().intValue() <<  0);
+    }
+
+    return rgb;
   }
 
   public static ColorTable readFrom(InputStream stream, int packedSize, boolean isSorted) throws IOException, UnexpectedEndOfStream {
     var size = 1 << (packedSize + 1);
-    var table = new ArrayList<Color>(size);
+
+    var bytes = stream.readNBytes(3 * size);
+    if (bytes.length < 3 * size)
+      throw new UnexpectedEndOfStream();
+
+    var rgb = new int[size];
     for (var i=0; i < size; ++i)
-      table.add(new Color(stream));
+      rgb[i] = (Byte.toUnsignedInt(bytes[3*i + 0]) << 16)
+             | (Byte.toUnsignedInt(bytes[3*i + 1]) <<  8)
+             | (Byte.toUnsignedInt(bytes[3*i + 2]) <<  0);
 
-    return new ColorTable(Collections.unmodifiableList(table), isSorted);
+    return new ColorTable(rgb, isSorted);
   }
 
+  public List<Color> colors() { return new ColorList(); }
+
+  public boolean isSorted() { return isSorted; }
+
+  public int size() { return rgb.length; }
+
+  // 0xRRGGBB
+  public int rgb(int index) { return rgb[index]; }
+
   public int packedSize() {
-    for (var i=1; i <= 8; ++i)
-      if (colors.size() == (1 << i))
-        return i - 1;
+    return Integer.numberOfTrailingZeros(rgb.length) - 1;
+  }
+
+  /*
+   *  every color as opaque ARGB, with the transparent color index (if any) as 0
+   *  always has 256 entries, the ones past the table are 0 as well
+   *
+   *  the array is shared, so it mustn't be modified
+   */
+  public int[] argb(int transparentColorIndex) {
+    var slot = 0 <= transparentColorIndex && transparentColorIndex < rgb.length ? transparentColorIndex + 1 : 0;
+
+    var palette = palettes.get(slot);
+    if (palette == null) {
+      palette = new int[PALETTE_SIZE];
+      for (var i=0; i < rgb.length; ++i)
+        palette[i] = 0xff000000 | rgb[i];
+
+      if (slot != 0)
+        palette[transparentColorIndex] = 0;
+
+      // another thread might have built the same one in the meantime, either is fine
+      palettes.compareAndSet(slot, null, palette);
+      palette = palettes.get(slot);
+    }
 
-    throw new Error("unreachable");
+    return palette;
+  }
+
+  // writes every color as opaque ARGB to dst, with the transparent color index (if any) as 0
+  public void copyArgbTo(int[] dst, int transparentColorIndex) {
+    System.arraycopy(argb(transparentColorIndex), 0, dst, 0, rgb.length);
   }
 
   @Override
   public void writeTo(OutputStream stream) throws IOException {
-    for (var color : colors())
-      color.writeTo(stream);
+    var bytes = new byte[3 * rgb.length];
+    for (var i=0; i < rgb.length; ++i) {
+      bytes[3*i + 0] = (byte)(rgb[i] >> 16);
+      bytes[3*i + 1] = (byte)(rgb[i] >>  8);
+      bytes[3*i + 2] = (byte)(rgb[i] >>  0);
+    }
+
+    stream.write(bytes);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ColorTable oTable && isSorted == oTable.isSorted && Arrays.equals(rgb, oTable.rgb);
+  }
+
+  @Override
+  public int hashCode() { return 31 * Arrays.hashCode(rgb) + Boolean.hashCode(isSorted); }
+
+  @Override
+  public String toString() {
+    return "ColorTable[colors=" + colors() + ", isSorted=" + isSorted + "]";
+  }
+
+  private final class ColorList extends AbstractList<Color> implements RandomAccess {
+    @Override
+    public Color get(int index) {
+      var color = rgb[index];
+      return new Color(
+        new Unsigned.Byte((color >> 16) & 0xff),
+        new Unsigned.Byte((color >>  8) & 0xff),
+        new Unsigned.Byte((color >>  0) & 0xff));
+    }
+
+    @Override
+    public int size() { return rgb.length; }
   }
 }
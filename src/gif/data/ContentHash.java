@@ -0,0 +1,65 @@
+package gif.data;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/*
+ *  fast 64-bit hash of a run of bytes, for telling apart payloads without comparing them
+ *
+ *  not cryptographic, it's the 64-bit MurmurHash3 mix applied eight bytes at a time, which is
+ *  plenty to keep accidental collisions out of diffs and caches
+ *  the same bytes hash the same on every run and every platform
+ */
+public final class ContentHash {
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private ContentHash() {}
+
+  // hashes the bytes between the buffer's position and limit, leaving both as they were
+  public static long of(ByteBuffer bytes) {
+    var buffer = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    var start  = buffer.position();
+    var length = buffer.remaining();
+
+    var hash = 0L;
+    var i = 0;
+    for (; i + 8 <= length; i += 8)
+      hash = mixInto(hash, buffer.getLong(start + i));
+
+    var tail = 0L;
+    for (var j=0; i + j < length; ++j)
+      tail |= Byte.toUnsignedLong(buffer.get(start + i + j)) << (8 * j);
+
+    if (i < length)
+      hash ^= mixKey(tail);
+
+    return finish(hash ^ length);
+  }
+
+  public static long of(byte[] bytes) {
+    return of(ByteBuffer.wrap(bytes));
+  }
+
+  // combines two hashes, order matters
+  public static long combine(long hash, long other) {
+    return finish(mixInto(hash, other));
+  }
+
+  private static long mixKey(long key) {
+    return Long.rotateLeft(key * C1, 31) * C2;
+  }
+
+  private static long mixInto(long hash, long key) {
+    return Long.rotateLeft(hash ^ mixKey(key), 27) * 5 + 0x52dce729;
+  }
+
+  private static long finish(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -3,55 +3,282 @@ package gif.data;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 
+import gif.data.exception.InvalidValue;
+import gif.data.exception.OutOfBounds;
 import gif.data.exception.ParseException;
+import gif.data.exception.UnexpectedEndOfStream;
+
+/*
+ *  sub-blocks are kept in a single buffer laid out the way they're encoded:
+ *  each sub-block's size followed by its data, then the block terminator
+ *
+ *  offsets[i] is the position of the size byte of the i-th sub-block
+ */
+public final class DataBlock implements Serializable {
+  private final ByteBuffer encoded;
+  private final int[] offsets;
+  private int hash;  // worked out the first time it's asked for, 0 until then
 
-public record DataBlock(List<SubBlock> subBlocks) implements Serializable {
   public DataBlock(List<SubBlock> subBlocks) {
     subBlocks.stream().forEach(Objects::requireNonNull);
-    this.subBlocks = List.copyOf(subBlocks);
+
+    var size = 1;  // block terminator
+    for (var subBlock : subBlocks)
+      size += 1 + subBlock.size();
+
+    var bytes = new byte[size];
+    var offsets = new int[subBlocks.size()];
+    var position = 0;
+    for (var i=0; i < offsets.length; ++i) {
+      var subBlock = subBlocks.get(i);
+
+      offsets[i] = position;
+      bytes[position++] = (byte)subBlock.size();
+
+      subBlock.copyTo(bytes, position);
+      position += subBlock.size();
+    }
+
+    this.encoded = ByteBuffer.wrap(bytes);
+    this.offsets = offsets;
+  }
+
+  private DataBlock(ByteBuffer encoded, int[] offsets) {
+    this.encoded = encoded;
+    this.offsets = offsets;
   }
 
   public static DataBlock readFrom(InputStream stream) throws IOException, ParseException {
-    var subBlocks = new ArrayList<SubBlock>();
+    if (stream instanceof ByteBufferInputStream bufferStream)
+      return readFrom(bufferStream);
+
+    var bytes = new byte[256];
+    var offsets = new int[8];
+    var subBlockCount = 0;
+    var position = 0;
+    while (true) {
+      var length = Unsigned.Byte.readFrom(stream).intValue();
+      if (position + 1 + length > bytes.length)
+        bytes = Arrays.copyOf(bytes, Math.max(position + 1 + length, 2 * bytes.length));
+
+      bytes[position++] = (byte)length;
+      if (length == 0)
+        break;
+
+      if (subBlockCount == offsets.length)
+        offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+
+      offsets[subBlockCount++] = position - 1;
+
+      if (stream.readNBytes(bytes, position, length) < length)
+        throw new UnexpectedEndOfStream();
+
+      position += length;
+    }
+
+    return new DataBlock(
+      ByteBuffer.wrap(position == bytes.length ? bytes : Arrays.copyOf(bytes, position)),
+      Arrays.copyOf(offsets, subBlockCount)
+    );
+  }
+
+  // only walks the sub-block sizes, the block itself is a slice of the stream's buffer
+  public static DataBlock readFrom(ByteBufferInputStream stream) throws ParseException {
+    var start = stream.position();
+    var offsets = new int[8];
+    var subBlockCount = 0;
     while (true) {
-      var length = Unsigned.Byte.readFrom(stream);
-      if (length.equals(Unsigned.Byte.ZERO))
-        return new DataBlock(Collections.unmodifiableList(subBlocks));
+      var length = stream.read();
+      if (length < 0)
+        throw new UnexpectedEndOfStream();
 
-      subBlocks.add(new SubBlock(Unsigned.Byte.listFrom(stream.readNBytes(length.intValue()))));
+      if (length == 0)
+        break;
+
+      if (subBlockCount == offsets.length)
+        offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+
+      offsets[subBlockCount++] = stream.position() - 1 - start;
+
+      if (stream.skip(length) < length)
+        throw new UnexpectedEndOfStream();
     }
+
+    return new DataBlock(
+      stream.slice(start, stream.position() - start),
+      Arrays.copyOf(offsets, subBlockCount)
+    );
+  }
+
+  // wraps bytes that are already laid out as sub-blocks followed by a block terminator, without copying them
+  public static DataBlock wrap(byte[] encoded, int length) throws ParseException {
+    var stream = new ByteBufferInputStream(ByteBuffer.wrap(encoded, 0, length));
+    var dataBlock = readFrom(stream);
+    InvalidValue.check("data block size", stream.position(), length);
+
+    return dataBlock;
   }
 
   @Override
   public void writeTo(OutputStream stream) throws IOException {
-    for (var subBlock : subBlocks)
-      subBlock.writeTo(stream);
+    if (stream instanceof ChannelOutputStream channelStream) {
+      channelStream.write(encoded.duplicate());
+      return;
+    }
+
+    if (encoded.hasArray()) {
+      stream.write(encoded.array(), encoded.arrayOffset(), encoded.limit());
+      return;
+    }
 
-    stream.write(0);
+    var chunk = new byte[Math.min(encoded.limit(), 4096)];
+    for (var position=0; position < encoded.limit(); position += chunk.length) {
+      var length = Math.min(chunk.length, encoded.limit() - position);
+      encoded.get(position, chunk, 0, length);
+      stream.write(chunk, 0, length);
+    }
+  }
+
+  public List<SubBlock> subBlocks() { return new SubBlockList(); }
+
+  public int subBlockCount() { return offsets.length; }
+
+  // size of the data without the sub-block sizes and block terminator
+  public int totalSize() { return encoded.limit() - offsets.length - 1; }
+
+  public int encodedSize() { return encoded.limit(); }
+
+  // copies the data of every sub-block into dst, back to back
+  public void copyTo(byte[] dst, int offset) {
+    for (var i=0; i < offsets.length; ++i) {
+      var length = Byte.toUnsignedInt(encoded.get(offsets[i]));
+      encoded.get(offsets[i] + 1, dst, offset, length);
+      offset += length;
+    }
   }
 
-  public int totalSize() {
-    return subBlocks.stream()
-      .mapToInt(subBlock -> subBlock.data.size())
-      .sum();
+  /*
+   *  the block on its own heap array if it's a slice of a larger buffer (like a file mapping),
+   *  so holding on to it doesn't hold on to the rest of the buffer
+   */
+  public DataBlock compact() {
+    if (encoded.hasArray() && encoded.arrayOffset() == 0 && encoded.array().length == encoded.limit())
+      return this;
+
+    var bytes = new byte[encoded.limit()];
+    encoded.get(0, bytes);
+
+    var result = new DataBlock(ByteBuffer.wrap(bytes), offsets);
+    result.hash = hash;
+    return result;
   }
 
-  public record SubBlock(List<Unsigned.Byte> data) implements Serializable {
+  // read-only view of the block as it's encoded, sub-block sizes and block terminator included
+  public ByteBuffer asByteBuffer() { return encoded.asReadOnlyBuffer(); }
+
+  @Override
+  public boolean equals(Object o) {
+    return o == this || o instanceof DataBlock oDataBlock && encoded.equals(oDataBlock.encoded);
+  }
+
+  // blocks can be large and are used as keys, so the hash is only computed once
+  @Override
+  public int hashCode() {
+    var hash = this.hash;
+    if (hash == 0)
+      this.hash = hash = encoded.hashCode();
+
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("DataBlock[subBlocks=%d, totalSize=%d]", subBlockCount(), totalSize());
+  }
+
+  private final class SubBlockList extends AbstractList<SubBlock> implements RandomAccess {
+    @Override
+    public SubBlock get(int index) {
+      var length = Byte.toUnsignedInt(encoded.get(offsets[index]));
+      return new SubBlock(encoded.slice(offsets[index] + 1, length));
+    }
+
+    @Override
+    public int size() { return offsets.length; }
+  }
+
+  public static final class SubBlock implements Serializable {
+    private final ByteBuffer data;
+
     public SubBlock(List<Unsigned.Byte> data) {
       data.stream().forEach(Objects::requireNonNull);
-      this.data = List.copyOf(data);
+      OutOfBounds.check("subblock size", data.size(), 1, 255);
+
+      var bytes = new byte[data.size()];
+      for (var i=0; i < bytes.length; ++i)
+        bytes[i] = data.get(i).byteValue();
+
+      this.data = ByteBuffer.wrap(bytes);
     }
 
+    public SubBlock(byte[] data) {
+      OutOfBounds.check("subblock size", data.length, 1, 255);
+
+      this.data = ByteBuffer.wrap(data.clone());
+    }
+
+    private SubBlock(ByteBuffer data) {
+      this.data = data;
+    }
+
+    public List<Unsigned.Byte> data() { return new ByteList(); }
+
+    public int size() { return data.limit(); }
+
+    public void copyTo(byte[] dst, int offset) {
+      data.get(0, dst, offset, data.limit());
+    }
+
+    public ByteBuffer asByteBuffer() { return data.asReadOnlyBuffer(); }
+
     @Override
     public void writeTo(OutputStream stream) throws IOException {
-      stream.write(data.size());
-      for (var b : data)
-        b.writeTo(stream);
+      stream.write(data.limit());
+      if (data.hasArray()) {
+        stream.write(data.array(), data.arrayOffset(), data.limit());
+      } else {
+        var bytes = new byte[data.limit()];
+        copyTo(bytes, 0);
+        stream.write(bytes);
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof SubBlock oSubBlock && data.equals(oSubBlock.data);
+    }
+
+    @Override
+    public int hashCode() { return data.hashCode(); }
+
+    @Override
+    public String toString() {
+      return String.format("SubBlock[size=%d]", size());
+    }
+
+    private final class ByteList extends AbstractList<Unsigned.Byte> implements RandomAccess {
+      @Override
+      public Unsigned.Byte get(int index) { return new Unsigned.Byte(data.get(index)); }
+
+      @Override
+      public int size() { return data.limit(); }
     }
   }
 }
@@ -0,0 +1,45 @@
+package gif.data;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import gif.data.exception.UnexpectedEndOfStream;
+
+/*
+ *  input stream that the block readers read from, which knows how far into the file it is
+ *
+ *  readers that know about it read bytes and shorts through it directly, and readers of whole
+ *  files attach its offset to the parse exceptions they let through
+ */
+public abstract class GifInputStream extends InputStream {
+  // number of bytes read since the start of the file
+  public abstract long offset();
+
+  // wraps streams that aren't already GifInputStreams in a buffer
+  public static GifInputStream of(InputStream stream) {
+    return stream instanceof GifInputStream gifStream ? gifStream : new BufferedGifInputStream(stream);
+  }
+
+  public int readUnsignedByte() throws IOException, UnexpectedEndOfStream {
+    var b = read();
+    if (b < 0)
+      throw new UnexpectedEndOfStream();
+
+    return b;
+  }
+
+  // little-endian
+  public int readUnsignedShort() throws IOException, UnexpectedEndOfStream {
+    var lo = read();
+    var hi = read();
+    if (hi < 0)
+      throw new UnexpectedEndOfStream();
+
+    return (hi << 8) | lo;
+  }
+
+  public void readFully(byte[] b, int off, int len) throws IOException, UnexpectedEndOfStream {
+    if (readNBytes(b, off, len) < len)
+      throw new UnexpectedEndOfStream();
+  }
+}
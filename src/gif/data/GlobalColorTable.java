@@ -9,7 +9,7 @@ import gif.data.exception.UnexpectedEndOfStream;
 
 public record GlobalColorTable(ColorTable colorTable, Unsigned.Byte backgroundColorIndex) {
   public GlobalColorTable(ColorTable colorTable, Unsigned.Byte backgroundColorIndex) {
-    OutOfBounds.check("background color index", backgroundColorIndex.intValue(), 0, colorTable.colors().size() - 1);
+    OutOfBounds.check("background color index", backgroundColorIndex.intValue(), 0, colorTable.size() - 1);
 
     this.colorTable           = Objects.requireNonNull(colorTable);
     this.backgroundColorIndex = Objects.requireNonNull(backgroundColorIndex);
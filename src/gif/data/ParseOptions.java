@@ -0,0 +1,32 @@
+package gif.data;
+
+import java.io.InputStream;
+import java.util.Objects;
+
+/*
+ *  strict parsing checks everything the spec says and reports what it allows but probably
+ *  shouldn't, trusted parsing is for files that were already parsed strictly once
+ *
+ *  trusted parsing still throws on anything it can't represent (like a truncated file),
+ *  it only leaves out the checks that don't change what gets built
+ */
+public record ParseOptions(boolean isTrusted, Warnings warnings) {
+  public static final ParseOptions STRICT  = new ParseOptions(false, Warnings.STANDARD_ERROR);
+  public static final ParseOptions TRUSTED = new ParseOptions(true,  Warnings.IGNORE);
+
+  public ParseOptions(boolean isTrusted, Warnings warnings) {
+    this.isTrusted = isTrusted;
+    this.warnings  = Objects.requireNonNull(warnings);
+  }
+
+  public ParseOptions withWarnings(Warnings warnings) {
+    return new ParseOptions(isTrusted, warnings);
+  }
+
+  // reports the message along with how far into the file the stream is, if it knows
+  public void warn(InputStream stream, String message) {
+    warnings.warn(stream instanceof GifInputStream gifStream
+      ? message + " (at offset " + gifStream.offset() + ")"
+      : message);
+  }
+}
@@ -1,9 +1,41 @@
 package gif.data;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 import gif.block.Extension;
 
 public class State {
-  public Optional<Extension.GraphicControlExtension> graphicControlExtension;
+  public Optional<Extension.GraphicControlExtension> graphicControlExtension = Optional.empty();
+
+  public final ParseOptions options;
+
+  // color tables seen so far in the file, so frames repeating the same table share it
+  private final Map<ColorTable, ColorTable> colorTables;
+
+  public State() {
+    this(ParseOptions.STRICT);
+  }
+
+  public State(ParseOptions options) {
+    this(options, new HashMap<>());
+  }
+
+  // pass a concurrent map to share it between threads
+  public State(ParseOptions options, Map<ColorTable, ColorTable> colorTables) {
+    this.options     = Objects.requireNonNull(options);
+    this.colorTables = colorTables;
+  }
+
+  // the state for the next block, with control blocks cleared
+  public State next() {
+    return new State(options, colorTables);
+  }
+
+  public ColorTable intern(ColorTable colorTable) {
+    var existing = colorTables.putIfAbsent(colorTable, colorTable);
+    return existing != null ? existing : colorTable;
+  }
 }
@@ -30,6 +30,9 @@ public sealed abstract class Unsigned extends Number implements Comparable<Unsig
     return o instanceof Unsigned oUnsigned && this.value == oUnsigned.value;
   }
 
+  @Override
+  public int hashCode() { return Integer.hashCode(value); }
+
   @Override
   public int compareTo(Unsigned o) {
     return Integer.valueOf(this.value).compareTo(Integer.valueOf(o.value));
@@ -52,6 +55,9 @@ public sealed abstract class Unsigned extends Number implements Comparable<Unsig
     }
 
     public static Byte readFrom(InputStream stream) throws IOException, UnexpectedEndOfStream {
+      if (stream instanceof GifInputStream gifStream)
+        return new Byte(gifStream.readUnsignedByte());
+
       var a = stream.read();
       if (a < 0)
         throw new UnexpectedEndOfStream();
@@ -85,6 +91,9 @@ public sealed abstract class Unsigned extends Number implements Comparable<Unsig
     }
 
     public static Short readFrom(InputStream stream) throws IOException, UnexpectedEndOfStream {
+      if (stream instanceof GifInputStream gifStream)
+        return new Short(gifStream.readUnsignedShort());
+
       var a = stream.read();
       var b = stream.read();
       if (b < 0)
@@ -0,0 +1,92 @@
+package gif.data;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ *  where parsers report things that are allowed but probably not intended
+ *
+ *  sinks are called on the parsing thread, so they should hand the message off rather than wait on anything
+ */
+@FunctionalInterface
+public interface Warnings {
+  void warn(String message);
+
+  Warnings IGNORE = message -> {};
+
+  /*
+   *  prints to stderr from a background thread, so parsers never wait on the console
+   *
+   *  the printer only takes messages off the queue while holding printLock, so the shutdown hook
+   *  that prints what's left waits for the message being printed instead of losing it
+   *  once the hook has started, warnings are printed on the warning thread instead
+   */
+  Warnings STANDARD_ERROR = new Warnings() {
+    private final ConcurrentLinkedQueue<String> messages = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock printLock = new ReentrantLock();
+    private volatile Thread printer;
+    private volatile boolean isExiting = false;
+
+    @Override
+    public void warn(String message) {
+      messages.add(message);
+
+      // set before the hook prints what's queued, so a message added after that is seen here
+      if (isExiting) {
+        printQueued();
+        return;
+      }
+
+      // only the first warning goes through the lock
+      var printer = this.printer;
+      if (printer == null)
+        printer = start();
+
+      if (printer != null)
+        LockSupport.unpark(printer);
+    }
+
+    // null if the JVM is already exiting, in which case warnings are printed as they come
+    private synchronized Thread start() {
+      if (printer != null || isExiting)
+        return printer;
+
+      // daemon threads don't hold up exiting, so whatever is still queued is printed on the way out
+      try {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+          isExiting = true;
+          printQueued();
+        }));
+      } catch (IllegalStateException e) {  // shutdown in progress
+        isExiting = true;
+        printQueued();
+        return null;
+      }
+
+      // parks between batches, a warning unparks it (before it parks as well, so none are missed)
+      printer = Thread.ofPlatform().name("gif-warnings").daemon().start(() -> {
+        while (!Thread.interrupted()) {
+          printQueued();
+          LockSupport.park(this);
+        }
+      });
+
+      return printer;
+    }
+
+    private void printQueued() {
+      printLock.lock();
+      try {
+        for (String message; (message = messages.poll()) != null; )
+          print(message);
+      } finally {
+        printLock.unlock();
+      }
+    }
+
+    private static void print(String message) {
+      System.err.println("WARNING: " + message);
+    }
+  };
+}
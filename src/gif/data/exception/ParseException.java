@@ -1,9 +1,37 @@
 package gif.data.exception;
 
+import java.util.OptionalLong;
+
 public class ParseException extends IllegalArgumentException {
+  private long offset = -1;
+
   public ParseException() {}
 
   public ParseException(String message) {
     super(message);
   }
+
+  // offset in the file where parsing stopped, if the exception went through a reader that knows it
+  public OptionalLong offset() {
+    return offset < 0 ? OptionalLong.empty() : OptionalLong.of(offset);
+  }
+
+  // keeps the first offset recorded, which is the most precise one
+  public ParseException at(long offset) {
+    if (this.offset < 0)
+      this.offset = offset;
+
+    return this;
+  }
+
+  @Override
+  public String getMessage() {
+    var message = super.getMessage();
+    if (offset < 0)
+      return message;
+
+    return message == null
+      ? "at offset " + offset
+      : message + " (at offset " + offset + ")";
+  }
 }
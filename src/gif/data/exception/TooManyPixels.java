@@ -0,0 +1,23 @@
+package gif.data.exception;
+
+// for images and screens too large for the arrays their pixels are held in
+public class TooManyPixels extends ParseException {
+  // the most elements VMs reliably allocate an array of
+  public static final int MAXIMUM_PIXEL_COUNT = Integer.MAX_VALUE - 8;
+
+  public TooManyPixels(String name, int width, int height) {
+    super(String.format(
+      "%s too large: %dx%d is %d pixels, at most %d fit in an array",
+      name, width, height, (long)width * height, MAXIMUM_PIXEL_COUNT
+    ));
+  }
+
+  // the number of pixels, which fits in an int
+  public static int check(String name, int width, int height) throws TooManyPixels {
+    var pixelCount = (long)width * height;
+    if (pixelCount > MAXIMUM_PIXEL_COUNT)
+      throw new TooManyPixels(name, width, height);
+
+    return (int)pixelCount;
+  }
+}
@@ -1,3 +1,7 @@
 package gif.data.exception;
 
-public class UnexpectedEndOfStream extends ParseException {}
+public class UnexpectedEndOfStream extends ParseException {
+  public UnexpectedEndOfStream() {
+    super("unexpected end of stream");
+  }
+}
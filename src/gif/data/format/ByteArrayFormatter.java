@@ -1,21 +1,27 @@
 package gif.data.format;
 
 public class ByteArrayFormatter {
-  public static String format(int groupSize, byte[] data) {
-    var output = "";
-    var left = data.length;
-    for (int i=0; i < data.length; i += groupSize, left -= groupSize) {
-      for (int j=0; j < Math.min(groupSize, left); ++j)
-        output += String.format("%02x", data[i+j]);
+  static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-      if (left > groupSize)
-        output += " ";
-    }
+  public static String format(int groupSize, byte[] data) {
+    var output = new StringBuilder(2 * data.length + data.length / Math.max(1, groupSize));
+    formatTo(output, groupSize, data, 0, data.length);
 
-    return output;
+    return output.toString();
   }
 
   public static String format(byte[] a) {
     return ByteArrayFormatter.format(4, a);
   }
+
+  // appends length bytes of data from offset, in groups of groupSize separated by spaces
+  public static void formatTo(StringBuilder output, int groupSize, byte[] data, int offset, int length) {
+    for (var i=0; i < length; ++i) {
+      if (i > 0 && i % groupSize == 0)
+        output.append(' ');
+
+      var b = data[offset + i];
+      output.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+    }
+  }
 }
@@ -0,0 +1,99 @@
+package gif.data.format;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+/*
+ *  formats a file as rows of ROW_SIZE bytes, only reading and formatting the rows asked for
+ *
+ *    00000000  47 49 46 38 39 61 0a 00  0a 00 91 00 00 ff ff ff  |GIF89a..........|
+ *
+ *  the file is read a page at a time, so neighbouring rows don't each go to the channel
+ *  the offset column widens past 8 digits for files over 4GB
+ *
+ *  thread-safe, rows can be formatted from any thread
+ */
+public final class HexDump {
+  public static final int ROW_SIZE = 16;
+  private static final int PAGE_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private final long size;
+  private final int offsetWidth;
+
+  // the page read last, guarded by this
+  private final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+  private long pageOffset = -1;
+
+  public HexDump(FileChannel channel) throws IOException {
+    this.channel = Objects.requireNonNull(channel);
+    this.size    = channel.size();
+
+    var digits = (64 - Long.numberOfLeadingZeros(Math.max(0, size - 1)) + 3) / 4;
+    this.offsetWidth = Math.max(8, digits);
+  }
+
+  public long size() { return size; }
+
+  public long rowCount() { return (size + ROW_SIZE - 1) / ROW_SIZE; }
+
+  // appends the given row, without a line separator
+  public void formatRow(StringBuilder output, long row) throws IOException {
+    Objects.checkIndex(row, rowCount());
+
+    var bytes = new byte[ROW_SIZE];
+    var length = read(row * ROW_SIZE, bytes);
+
+    formatOffset(output, row * ROW_SIZE);
+    output.append("  ");
+    for (var i=0; i < ROW_SIZE; ++i) {
+      if (i == ROW_SIZE / 2)
+        output.append(' ');
+
+      if (i < length) {
+        ByteArrayFormatter.formatTo(output, 1, bytes, i, 1);
+        output.append(' ');
+      } else {
+        output.append("   ");
+      }
+    }
+
+    output.append(" |");
+    for (var i=0; i < length; ++i)
+      output.append(0x20 <= bytes[i] && bytes[i] < 0x7f ? (char)bytes[i] : '.');
+
+    output.append('|');
+  }
+
+  public String formatRow(long row) throws IOException {
+    var output = new StringBuilder(offsetWidth + 4 * ROW_SIZE + 8);
+    formatRow(output, row);
+
+    return output.toString();
+  }
+
+  private void formatOffset(StringBuilder output, long offset) {
+    for (var shift = 4 * (offsetWidth - 1); shift >= 0; shift -= 4)
+      output.append(ByteArrayFormatter.HEX_DIGITS[(int)(offset >>> shift) & 0xf]);
+  }
+
+  // returns the number of bytes read, which is only less than dst.length at the end of the file
+  private synchronized int read(long offset, byte[] dst) throws IOException {
+    var start = offset - offset % PAGE_SIZE;
+    if (start != pageOffset) {
+      pageOffset = -1;  // in case reading fails
+      page.clear();
+      while (page.hasRemaining() && channel.read(page, start + page.position()) > 0);
+      page.flip();
+      pageOffset = start;
+    }
+
+    var position = (int)(offset - start);
+    var length = Math.max(0, Math.min(dst.length, page.limit() - position));
+    page.get(position, dst, 0, length);
+
+    return length;
+  }
+}
@@ -0,0 +1,28 @@
+package gif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gif.Composite")
+@Label("GIF Composite")
+@Category("GIF")
+@Description("A decoded frame drawn onto the canvas, after disposing of the previous one")
+public class CompositeEvent extends Event {
+  @Label("Frame Index")
+  public int frameIndex;
+
+  @Label("Left")
+  public int left;
+
+  @Label("Top")
+  public int top;
+
+  @Label("Width")
+  public int width;
+
+  @Label("Height")
+  public int height;
+}
@@ -0,0 +1,39 @@
+package gif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gif.Decode")
+@Label("GIF Decode")
+@Category("GIF")
+@Description("Image data decompressed into values, color indices, ARGB colors or pixels")
+public class DecodeEvent extends Event {
+  @Label("Output")
+  @Description("values, indices, argb or pixels")
+  public String output;
+
+  @Label("Width")
+  public int width;
+
+  @Label("Height")
+  public int height;
+
+  @Label("Interlaced")
+  public boolean isInterlaced;
+
+  @Label("Minimum Code Size")
+  public int minimumCodeSize;
+
+  @Label("Compressed Size")
+  @DataAmount
+  public long compressedBytes;
+
+  @Label("Decoded Size")
+  @Description("Number of values decoded, one per pixel")
+  @DataAmount
+  public long decodedBytes;
+}
@@ -0,0 +1,30 @@
+package gif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gif.Parse")
+@Label("GIF Parse")
+@Category("GIF")
+@Description("A whole file parsed into a Gif")
+public class ParseEvent extends Event {
+  @Label("File Size")
+  @DataAmount
+  public long fileSize;
+
+  @Label("Width")
+  public int width;
+
+  @Label("Height")
+  public int height;
+
+  @Label("Frame Count")
+  public int frameCount;
+
+  @Label("Block Count")
+  public int blockCount;
+}
@@ -0,0 +1,26 @@
+package gif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gif.ReadBlock")
+@Label("GIF Read Block")
+@Category("GIF")
+@Description("A labeled block read from a stream")
+public class ReadBlockEvent extends Event {
+  @Label("Label")
+  public byte label;
+
+  @Label("Offset")
+  @Description("Offset of the block in the file, -1 if the stream doesn't keep track of it")
+  public long offset;
+
+  @Label("Size")
+  @Description("Size of the block including its label, -1 if the stream doesn't keep track of it")
+  @DataAmount
+  public long size;
+}
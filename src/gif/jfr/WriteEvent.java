@@ -0,0 +1,25 @@
+package gif.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("gif.Write")
+@Label("GIF Write")
+@Category("GIF")
+@Description("A Gif written to a stream or channel")
+public class WriteEvent extends Event {
+  @Label("Size")
+  @DataAmount
+  public long size;
+
+  @Label("Frame Count")
+  public int frameCount;
+
+  @Label("Channel")
+  @Description("Whether it was written to a channel rather than a stream")
+  public boolean isChannel;
+}
@@ -1,60 +1,153 @@
 package gif.lzw;
 
-import java.util.Iterator;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Objects;
 
 import gif.data.DataBlock;
-import gif.data.Unsigned;
-import gif.data.DataBlock.SubBlock;
+import gif.data.exception.OutOfBounds;
+import gif.data.exception.ParseException;
 import gif.data.exception.UnexpectedEndOfStream;
 
+/*
+ *  reads LSB-first codes out of the concatenated sub-block data
+ *
+ *  bits are kept in a 64-bit buffer that's refilled a word at a time, so reading a code is
+ *  a shift and a mask instead of a loop over its bits
+ *
+ *  the data block's encoded bytes are read in place, skipping over the sub-block sizes
+ *
+ *  streams can also be opened empty and have sub-blocks appended as they arrive, in which case
+ *  reading past what's been appended returns NEEDS_MORE_DATA instead of throwing, until it's closed
+ */
 public class BitStream {
-  private final Iterator<Unsigned.Byte> data;
-  private int currentByte = 0;
-  private int bitsLeftInCurrentByte = 0;
+  public static final int NEEDS_MORE_DATA = -1;
+
+  private DataBlock dataBlock;  // null while open
+  private ByteBuffer data;
+  private int position = 0;
+  private int end = 0;  // end of the current sub-block's data
+  private int subBlockCount = 0;  // sub-blocks started so far, each one's size byte is before position
+
+  private long buffer = 0;  // bits above bitCount are always zero
+  private int bitCount = 0;
 
   public BitStream(DataBlock dataBlock) {
-    data = dataBlock.subBlocks().stream()
-      .map(SubBlock::data)
-      .flatMap(List::stream)
-      .iterator();
-  }
-
-  private static int reverseBits(int bits, int bitCount) {
-    var output = 0;
-    for (int i=0; i < bitCount; ++i) {
-      output <<= 1;
-      output |= bits & 1;
-      bits >>= 1;
-    }
+    this.dataBlock = Objects.requireNonNull(dataBlock);
+    data = dataBlock.asByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  // encoded sub-blocks appended so far, the size of the buffer is the capacity of data
+  private byte[] appended;
 
-    return output;
+  public BitStream() {
+    appended = new byte[256];
+    data = ByteBuffer.wrap(appended).limit(0).order(ByteOrder.LITTLE_ENDIAN);
   }
 
-  public int read() throws UnexpectedEndOfStream {
-    if (bitsLeftInCurrentByte == 0) {
-      if (!data.hasNext())
-        throw new UnexpectedEndOfStream();
+  public boolean isOpen() { return dataBlock == null; }
 
-      currentByte = data.next().intValue();
-      bitsLeftInCurrentByte = 8;
-    }
+  public DataBlock dataBlock() {
+    if (isOpen())
+      throw new IllegalStateException("stream is still open");
+
+    return dataBlock;
+  }
+
+  // adds the data of one sub-block (1 to 255 bytes) to an open stream
+  public void append(ByteBuffer subBlock) {
+    if (!isOpen())
+      throw new IllegalStateException("stream is closed");
+
+    int length = OutOfBounds.check("subblock size", subBlock.remaining(), 1, 255);
+    ensureCapacity(data.limit() + 1 + length);
+
+    var limit = data.limit();
+    appended[limit] = (byte)length;
+    subBlock.get(appended, limit + 1, length);
+    data.limit(limit + 1 + length);
+  }
 
-    var result = currentByte & 1;
+  // adds the block terminator, after which the stream reads like one over the returned data block
+  public DataBlock close() throws ParseException {
+    if (!isOpen())
+      return dataBlock;
+
+    ensureCapacity(data.limit() + 1);
+    appended[data.limit()] = 0;
+
+    dataBlock = DataBlock.wrap(appended, data.limit() + 1);
+    data.limit(data.limit() + 1);
+
+    return dataBlock;
+  }
 
-    currentByte >>= 1;
-    bitsLeftInCurrentByte--;
+  private void ensureCapacity(int capacity) {
+    if (capacity <= appended.length)
+      return;
 
-    return result;
+    appended = Arrays.copyOf(appended, Math.max(capacity, 2 * appended.length));
+    data = ByteBuffer.wrap(appended).limit(data.limit()).order(ByteOrder.LITTLE_ENDIAN);
   }
 
+  private void refill() {
+    while (bitCount < Long.SIZE - Byte.SIZE) {
+      if (position == end) {
+        if (position == data.limit())  // nothing past what's been appended yet
+          return;
+
+        var length = Byte.toUnsignedInt(data.get(position));
+        if (length == 0)  // block terminator
+          return;
+
+        position++;
+        end = position + length;
+        subBlockCount++;
+      }
+
+      if (end - position >= Long.BYTES) {
+        var byteCount = (Long.SIZE - 1 - bitCount) / Byte.SIZE;
+        var newBitCount = bitCount + byteCount * Byte.SIZE;
+
+        buffer |= data.getLong(position) << bitCount;
+        buffer &= (1L << newBitCount) - 1;
+
+        position += byteCount;
+        bitCount = newBitCount;
+      } else {
+        buffer |= (long)Byte.toUnsignedInt(data.get(position++)) << bitCount;
+        bitCount += Byte.SIZE;
+      }
+    }
+  }
+
+  // number of bits returned by read so far
+  public long bitsRead() {
+    return (long)(position - subBlockCount) * Byte.SIZE - bitCount;
+  }
+
+  public int read() throws UnexpectedEndOfStream {
+    return read(1);
+  }
+
+  // returns NEEDS_MORE_DATA if the stream is open and doesn't have bitCount bits yet
   public int read(int bitCount) throws UnexpectedEndOfStream {
-    int bits = 0;
-    for (int i=0; i < bitCount; ++i) {
-      bits <<= 1;
-      bits |= read();
+    if (this.bitCount < bitCount) {
+      refill();
+      if (this.bitCount < bitCount) {
+        if (isOpen())
+          return NEEDS_MORE_DATA;
+
+        throw new UnexpectedEndOfStream();
+      }
     }
 
-    return BitStream.reverseBits(bits, bitCount);
+    var bits = (int)buffer & ((1 << bitCount) - 1);
+
+    buffer >>>= bitCount;
+    this.bitCount -= bitCount;
+
+    return bits;
   }
 }
@@ -0,0 +1,90 @@
+package gif.lzw;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import gif.data.DataBlock;
+import gif.data.exception.ParseException;
+
+/*
+ *  writes LSB-first codes straight into sub-blocks
+ *
+ *  bits are collected in a 64-bit buffer and written out 32 at a time, with the size byte of
+ *  each sub-block reserved when it's started and filled in when it's full
+ */
+public class BitWriter {
+  private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final int MAXIMUM_SUBBLOCK_SIZE = 255;
+
+  private byte[] bytes = new byte[4096];
+  private int size = 1;
+  private int subBlockStart = 0;  // position of the size byte of the current sub-block
+
+  private long buffer = 0;
+  private int bitCount = 0;
+
+  public void reset() {
+    size = 1;
+    subBlockStart = 0;
+
+    buffer = 0;
+    bitCount = 0;
+  }
+
+  public void write(int bits, int bitCount) {
+    buffer |= (long)bits << this.bitCount;
+    this.bitCount += bitCount;
+
+    if (this.bitCount >= Integer.SIZE) {
+      if (size + Integer.BYTES + 2 > bytes.length)
+        bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+
+      if (subBlockStart + 1 + MAXIMUM_SUBBLOCK_SIZE - size >= Integer.BYTES) {
+        INT.set(bytes, size, (int)buffer);
+        size += Integer.BYTES;
+      } else {
+        for (var i=0; i < Integer.BYTES; ++i)
+          put((int)(buffer >>> (i * Byte.SIZE)));
+      }
+
+      buffer >>>= Integer.SIZE;
+      this.bitCount -= Integer.SIZE;
+    }
+  }
+
+  private void put(int b) {
+    if (size - subBlockStart - 1 == MAXIMUM_SUBBLOCK_SIZE) {
+      bytes[subBlockStart] = (byte)MAXIMUM_SUBBLOCK_SIZE;
+      subBlockStart = size++;
+    }
+
+    if (size + 2 > bytes.length)
+      bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+
+    bytes[size++] = (byte)b;
+  }
+
+  // pads the last byte with zeroes, ends the data block and starts over
+  public DataBlock finish() throws ParseException {
+    for (; bitCount > 0; bitCount -= Byte.SIZE) {
+      put((int)buffer);
+      buffer >>>= Byte.SIZE;
+    }
+
+    var lastSubBlockSize = size - subBlockStart - 1;
+    if (lastSubBlockSize == 0) {
+      size = subBlockStart;  // the reserved size byte becomes the block terminator
+    } else {
+      bytes[subBlockStart] = (byte)lastSubBlockSize;
+    }
+
+    bytes[size++] = 0;
+
+    var result = DataBlock.wrap(Arrays.copyOf(bytes, size), size);
+    reset();
+
+    return result;
+  }
+}
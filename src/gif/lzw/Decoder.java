@@ -0,0 +1,458 @@
+package gif.lzw;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+
+import gif.data.exception.InvalidValue;
+import gif.data.exception.OutOfBounds;
+import gif.data.exception.ParseException;
+
+/*
+ *  table-based LZW decoder
+ *
+ *  every code is stored as (prefix code, suffix value) along with the length and first value of its
+ *  string, so adding a code is constant time and strings are written out by walking the prefix chain
+ *  backwards from their last value
+ *
+ *  instances keep their tables and output buffer between calls, so reuse one per thread
+ *
+ *  statistics are only gathered when a code table is cleared and when an image ends, codes aren't
+ *  counted as they're read, so decoding costs the same whether they're being collected or not
+ *
+ *  decoding into a byte raster can also go a sub-block at a time, over a stream they're appended to
+ *  as they arrive (see begin, decodeAvailable and end)
+ */
+public class Decoder {
+  private static final int TABLE_SIZE = 1 << Lzw.MAXIMUM_CODE_SIZE;
+  private static final int END_OF_INFORMATION = -1;
+  private static final int NEEDS_MORE_DATA    = -2;
+
+  private final short[] prefix = new short[TABLE_SIZE];
+  private final short[] suffix = new short[TABLE_SIZE];
+  private final short[] first  = new short[TABLE_SIZE];
+  private final short[] length = new short[TABLE_SIZE];
+
+  private int[] output = new int[TABLE_SIZE];
+  private final short[] string = new short[TABLE_SIZE];  // strings that span rows are unwound here first
+
+  private BitStream stream;
+  private int minimumCodeSize;
+  private int clearCode;
+  private int codeCount;
+  private int codeSize;
+  private int previousCode;
+  private long segmentStart;  // bits read before the first code since the table was last cleared
+
+  private Optional<Statistics> statistics = Optional.empty();
+
+  // four passes of every 8th row from 0, every 8th from 4, every 4th from 2 and every 2nd from 1
+  private static final int[] INTERLACED_PASS_START = { 0, 4, 2, 1 };
+  private static final int[] INTERLACED_PASS_STEP  = { 8, 8, 4, 2 };
+
+  // position of the next value when decoding into a raster
+  private int rasterOffset;
+  private int rasterHeight;
+  private int rasterStride;
+  private boolean isInterlaced;
+  private int pass;
+  private int x;
+  private int y;
+  private int rowStart;
+
+  // the byte raster being decoded into, kept between calls when decoding incrementally
+  private byte[] raster;
+  private int rasterWidth;
+  private int pixelCount;
+  private int count;  // values read so far, past pixelCount if there were too many
+  private boolean reachedEnd;
+  private boolean decodesAtEnd;  // for minimum code sizes past 8
+
+  public int[] output() { return output; }
+
+  // adds what every following decode sees to statistics, until it's set back to empty
+  public void collectStatistics(Optional<Statistics> statistics) {
+    this.statistics = statistics;
+  }
+
+  /*
+   *  decodes the stream into the output buffer, growing it if needed
+   *  returns the number of values written
+   */
+  public int decode(BitStream stream, int minimumCodeSize) throws ParseException {
+    checkClosed(stream);
+    start(stream, minimumCodeSize);
+
+    var count = 0;
+    for (int code; (code = next()) != END_OF_INFORMATION; ) {
+      var end = count + length[code];
+      if (end > output.length)
+        output = Arrays.copyOf(output, Math.max(end, 2 * output.length));
+
+      for (var i=end - 1; i >= count; --i) {
+        output[i] = suffix[code];
+        code = prefix[code];
+      }
+
+      count = end;
+    }
+
+    finish(count);
+    return count;
+  }
+
+  /*
+   *  decodes a width x height image straight into dst, with row y starting at offset + y * stride
+   *  rows of interlaced images are put in place as they're decoded
+   *  throws if the image data doesn't have exactly width * height values or has a value past 0xff
+   */
+  public void decode(BitStream stream, int minimumCodeSize, byte[] dst, int offset, int width, int height, int stride, boolean isInterlaced) throws ParseException {
+    checkRaster(dst.length, offset, width, height, stride);
+
+    // values only fit in a byte without checking if the initial codes do
+    if (minimumCodeSize > Byte.SIZE) {
+      var count = decode(stream, minimumCodeSize);
+      InvalidValue.check("image data pixel count", count, width * height);
+
+      startRaster(offset, height, stride, isInterlaced);
+      for (var i=0; i < count; ++i) {
+        int value = OutOfBounds.check("color index", output[i], 0, 0xff);
+        dst[rowStart + x] = (byte)value;
+        if (++x == width)
+          nextRow();
+      }
+
+      return;
+    }
+
+    checkClosed(stream);
+    startByteRaster(stream, minimumCodeSize, dst, offset, width, height, stride, isInterlaced);
+    decodeAvailable();
+    end();
+  }
+
+  /*
+   *  starts decoding a width x height image into dst a piece at a time, like decode does all at once
+   *  the stream is usually still open, with sub-blocks appended to it as they arrive
+   *
+   *  minimum code sizes past 8 can't be checked a piece at a time, so those images are only decoded by end
+   */
+  public void begin(BitStream stream, int minimumCodeSize, byte[] dst, int offset, int width, int height, int stride, boolean isInterlaced) {
+    checkRaster(dst.length, offset, width, height, stride);
+
+    if (minimumCodeSize > Byte.SIZE) {
+      this.stream = stream;
+      this.minimumCodeSize = minimumCodeSize;
+      this.isInterlaced = isInterlaced;
+
+      raster       = dst;
+      rasterOffset = offset;
+      rasterWidth  = width;
+      rasterHeight = height;
+      rasterStride = stride;
+      pixelCount   = width * height;
+      count        = 0;  // stays 0 until end, not whatever the previous image got to
+      reachedEnd   = false;
+      decodesAtEnd = true;
+      return;
+    }
+
+    startByteRaster(stream, minimumCodeSize, dst, offset, width, height, stride, isInterlaced);
+  }
+
+  /*
+   *  decodes the codes in what's been appended to the stream so far
+   *  returns true once the end of information code has been read, after which nothing else is decoded
+   */
+  public boolean decodeAvailable() throws ParseException {
+    if (reachedEnd || decodesAtEnd)
+      return reachedEnd;
+
+    var dst = raster;
+    var width = rasterWidth;
+    var pixelCount = this.pixelCount;
+    var count = this.count;
+    try {
+      while (true) {
+        var code = next();
+        if (code == END_OF_INFORMATION) {
+          reachedEnd = true;
+          return true;
+        }
+
+        if (code == NEEDS_MORE_DATA)
+          return false;
+
+        var length = this.length[code];
+
+        count += length;
+        if (count > pixelCount)
+          continue;  // keep going to report the actual count
+
+        if (x + length <= width) {
+          for (var i=rowStart + x + length - 1; i >= rowStart + x; --i) {
+            dst[i] = (byte)suffix[code];
+            code = prefix[code];
+          }
+
+          x += length;
+          if (x == width)
+            nextRow();
+        } else {
+          unwind(code, length);
+          for (var i=0; i < length; ++i) {
+            dst[rowStart + x] = (byte)string[i];
+            if (++x == width)
+              nextRow();
+          }
+        }
+      }
+    } finally {
+      this.count = count;
+    }
+  }
+
+  // number of pixels decoded so far by decodeAvailable
+  public int decodedCount() { return Math.min(count, pixelCount); }
+
+  // finishes decoding once the stream is closed, throwing if the image data didn't have exactly width * height values
+  public void end() throws ParseException {
+    checkClosed(stream);
+
+    if (decodesAtEnd) {
+      decodesAtEnd = false;
+      decode(stream, minimumCodeSize, raster, rasterOffset, rasterWidth, rasterHeight, rasterStride, isInterlaced);
+      count = pixelCount;  // decode throws unless it got exactly that many
+      return;
+    }
+
+    decodeAvailable();  // reading past the end of a closed stream throws, so this gets to the end of information code
+    finish(count);
+    InvalidValue.check("image data pixel count", count, pixelCount);
+  }
+
+  private void startByteRaster(BitStream stream, int minimumCodeSize, byte[] dst, int offset, int width, int height, int stride, boolean isInterlaced) {
+    start(stream, minimumCodeSize);
+    startRaster(offset, height, stride, isInterlaced);
+
+    raster       = dst;
+    rasterWidth  = width;
+    pixelCount   = width * height;
+    count        = 0;
+    reachedEnd   = false;
+    decodesAtEnd = false;
+  }
+
+  private static void checkClosed(BitStream stream) {
+    if (stream.isOpen())
+      throw new IllegalArgumentException("stream is still open");
+  }
+
+  /*
+   *  same as decoding into a byte raster, but every value v is written as palette[v]
+   *  the palette has to cover every value the initial codes can have
+   */
+  public void decode(BitStream stream, int minimumCodeSize, int[] dst, int offset, int width, int height, int stride, boolean isInterlaced, int[] palette) throws ParseException {
+    checkRaster(dst.length, offset, width, height, stride);
+    OutOfBounds.check("palette size", palette.length, 1 << minimumCodeSize, Integer.MAX_VALUE);
+    checkClosed(stream);
+
+    start(stream, minimumCodeSize);
+    startRaster(offset, height, stride, isInterlaced);
+
+    var pixelCount = width * height;
+    var count = 0;
+    for (int code; (code = next()) != END_OF_INFORMATION; ) {
+      var length = this.length[code];
+
+      count += length;
+      if (count > pixelCount)
+        continue;  // keep going to report the actual count
+
+      if (x + length <= width) {
+        for (var i=rowStart + x + length - 1; i >= rowStart + x; --i) {
+          dst[i] = palette[suffix[code]];
+          code = prefix[code];
+        }
+
+        x += length;
+        if (x == width)
+          nextRow();
+      } else {
+        unwind(code, length);
+        for (var i=0; i < length; ++i) {
+          dst[rowStart + x] = palette[string[i]];
+          if (++x == width)
+            nextRow();
+        }
+      }
+    }
+
+    finish(count);
+    InvalidValue.check("image data pixel count", count, pixelCount);
+  }
+
+  private static void checkRaster(int size, int offset, int width, int height, int stride) {
+    if (width > stride)
+      throw new IllegalArgumentException("stride " + stride + " is smaller than width " + width);
+
+    if (width > 0 && height > 0)
+      Objects.checkFromIndexSize(offset, (height - 1) * stride + width, size);
+  }
+
+  private void startRaster(int offset, int height, int stride, boolean isInterlaced) {
+    rasterOffset = offset;
+    rasterHeight = height;
+    rasterStride = stride;
+    this.isInterlaced = isInterlaced;
+
+    pass = 0;
+    x = 0;
+    y = 0;
+    rowStart = offset;
+  }
+
+  private void nextRow() {
+    x = 0;
+
+    if (isInterlaced) {
+      y += INTERLACED_PASS_STEP[pass];
+      while (y >= rasterHeight && pass < INTERLACED_PASS_START.length - 1)
+        y = INTERLACED_PASS_START[++pass];
+    } else {
+      y++;
+    }
+
+    rowStart = rasterOffset + y * rasterStride;
+  }
+
+  private void unwind(int code, int length) {
+    for (var i=length - 1; i >= 0; --i) {
+      string[i] = suffix[code];
+      code = prefix[code];
+    }
+  }
+
+  private void start(BitStream stream, int minimumCodeSize) {
+    this.stream = stream;
+
+    // the initial codes never change, so they only need to be set up when the code size changes
+    if (this.minimumCodeSize != minimumCodeSize || clearCode == 0) {
+      this.minimumCodeSize = minimumCodeSize;
+      clearCode = 1 << minimumCodeSize;
+
+      for (var i=0; i < clearCode; ++i) {
+        suffix[i] = (short)i;
+        first [i] = (short)i;
+        length[i] = 1;
+      }
+    }
+
+    clear();
+  }
+
+  private void clear() {
+    codeCount    = clearCode + 2;  // clear code and end of information code
+    codeSize     = minimumCodeSize + 1;
+    previousCode = -1;
+    segmentStart = stream.bitsRead();
+  }
+
+  private void finish(int count) {
+    if (statistics.isPresent())
+      statistics.get().addImage(stream.dataBlock().totalSize(), count, stream.dataBlock().subBlockCount());
+  }
+
+  // called with the clear or end of information code ending the segment just read
+  private void endSegment(Statistics statistics, boolean endedWithClearCode) {
+    var start = clearCode + 2;
+
+    // the codes are worked out from the bits they took up, since codes only grow at known code counts
+    var bits = stream.bitsRead() - codeSize - segmentStart;
+    var codes = 0L;
+    if (bits > 0) {
+      if (minimumCodeSize < 2) {
+        codes = bits / codeSize;  // the code size never grows
+      } else {
+        // the first code, then one for every code added to the table, read at the size the table had then
+        codes = 1 + (codeCount - start);
+        bits -= minimumCodeSize + 1;
+        for (var size=minimumCodeSize + 1; size <= Lzw.MAXIMUM_CODE_SIZE; ++size) {
+          var low  = size == minimumCodeSize + 1 ? start : 1 << (size - 1);
+          var high = Math.min(codeCount, 1 << size);
+          if (low < high)
+            bits -= (long)(high - low) * size;
+        }
+
+        codes += bits / codeSize;  // read once the table was full, without adding to it
+      }
+    }
+
+    var longestString = codes > 0 ? 1 : 0;
+    for (var i=start; i < codeCount; ++i)
+      longestString = Math.max(longestString, length[i]);
+
+    statistics.addSegment(codes + 1, endedWithClearCode, codeCount >= TABLE_SIZE - 1, longestString);
+  }
+
+  // returns the next code whose string should be output, handling clear codes along the way
+  private int next() throws ParseException {
+    while (true) {
+      var code = stream.read(codeSize);
+      if (code == BitStream.NEEDS_MORE_DATA)
+        return NEEDS_MORE_DATA;
+
+      var isLastCodeForCurrentSize = codeCount == (1 << codeSize) - 1;
+      var reachedMaxCodeCount = isLastCodeForCurrentSize && codeSize == Lzw.MAXIMUM_CODE_SIZE;
+
+      if (code < codeCount) {
+        if (code == clearCode) {
+          if (statistics.isPresent())
+            endSegment(statistics.get(), true);
+
+          clear();
+          continue;
+        }
+
+        if (code == clearCode + 1) {
+          if (statistics.isPresent())
+            endSegment(statistics.get(), false);
+
+          return END_OF_INFORMATION;
+        }
+
+        if (reachedMaxCodeCount)
+          return code;
+
+        if (previousCode != -1) {
+          add(previousCode, first[code]);
+          if (isLastCodeForCurrentSize)
+            codeSize++;
+        }
+      } else if (code == codeCount && !reachedMaxCodeCount && previousCode != -1) {
+        // the code being defined is the previous string extended with its own first value
+        add(previousCode, first[previousCode]);
+        if (isLastCodeForCurrentSize)
+          codeSize++;
+      } else {
+        throw new OutOfBounds("LZW code table index", code, 0, codeCount - 1);
+      }
+
+      previousCode = code;
+      return code;
+    }
+  }
+
+  private void add(int prefixCode, int value) {
+    // minimum code sizes below 2 never grow the code size, so codes past the table can't be read anyway
+    if (codeCount == TABLE_SIZE)
+      return;
+
+    prefix[codeCount] = (short)prefixCode;
+    suffix[codeCount] = (short)value;
+    first [codeCount] = first[prefixCode];
+    length[codeCount] = (short)(length[prefixCode] + 1);
+
+    codeCount++;
+  }
+}
@@ -0,0 +1,144 @@
+package gif.lzw;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import gif.data.DataBlock;
+import gif.data.exception.OutOfBounds;
+import gif.data.exception.ParseException;
+
+/*
+ *  LZW encoder producing data that Decoder reads back
+ *
+ *  codes are looked up in an open-addressed hash table keyed on (prefix code, next value),
+ *  and the code size follows the same rules Decoder uses to grow it
+ *
+ *  instances keep their tables and output buffer between calls, so reuse one per thread
+ */
+public class Encoder {
+  public enum ClearPolicy {
+    CLEAR_WHEN_FULL,  // start over with a clear code as soon as no more codes can be added
+    KEEP_WHEN_FULL,   // keep using the full table until the end (deferred clear)
+  }
+
+  // Decoder stops adding codes one short of the full table
+  private static final int CODE_LIMIT = (1 << Lzw.MAXIMUM_CODE_SIZE) - 1;
+
+  private static final int HASH_BITS = 13;  // twice the number of codes, so probes stay short
+  private static final int EMPTY = -1;
+
+  private final ClearPolicy clearPolicy;
+
+  // each entry is the key in the upper 20 bits and its code in the lower 12, keys never have all bits set
+  private final int[] entries = new int[1 << HASH_BITS];
+
+  private final BitWriter writer = new BitWriter();
+
+  private int minimumCodeSize;
+  private int clearCode;
+  private int nextCode;
+
+  // state of the decoder reading the output, which decides the code size
+  private int codeSize;
+  private int decoderCodeCount;
+  private boolean isFirstCodeAfterClear;
+
+  public Encoder() {
+    this(ClearPolicy.CLEAR_WHEN_FULL);
+  }
+
+  public Encoder(ClearPolicy clearPolicy) {
+    this.clearPolicy = Objects.requireNonNull(clearPolicy);
+  }
+
+  public DataBlock encode(byte[] indices, int minimumCodeSize) throws ParseException {
+    return encode(indices, 0, indices.length, minimumCodeSize);
+  }
+
+  public DataBlock encode(byte[] indices, int offset, int length, int minimumCodeSize) throws ParseException {
+    Objects.checkFromIndexSize(offset, length, indices.length);
+    this.minimumCodeSize = OutOfBounds.check("minimum code size", minimumCodeSize, 2, Byte.SIZE);
+    clearCode = 1 << minimumCodeSize;
+
+    writer.reset();
+    codeSize = minimumCodeSize + 1;
+    clear();
+
+    if (length > 0) {
+      var end = offset + length;
+      var prefix = check(indices[offset]);
+      for (var i=offset + 1; i < end; ++i) {
+        var value = check(indices[i]);
+        var key = (prefix << Byte.SIZE) | value;
+
+        var slot = (key * 0x9e3779b1) >>> (Integer.SIZE - HASH_BITS);
+        int entry;
+        while ((entry = entries[slot]) != EMPTY && (entry >>> Lzw.MAXIMUM_CODE_SIZE) != key)
+          slot = (slot + 1) & ((1 << HASH_BITS) - 1);
+
+        if (entry != EMPTY) {
+          prefix = entry & ((1 << Lzw.MAXIMUM_CODE_SIZE) - 1);
+          continue;
+        }
+
+        emit(prefix);
+
+        if (nextCode < CODE_LIMIT) {
+          entries[slot] = (key << Lzw.MAXIMUM_CODE_SIZE) | nextCode++;
+        } else if (clearPolicy == ClearPolicy.CLEAR_WHEN_FULL) {
+          clear();
+        }
+
+        prefix = value;
+      }
+
+      emit(prefix);
+    }
+
+    emit(clearCode + 1);  // end of information
+
+    return writer.finish();
+  }
+
+  private int check(byte index) throws OutOfBounds {
+    var value = Byte.toUnsignedInt(index);
+    if (value >= clearCode)
+      throw new OutOfBounds("color index", value, 0, clearCode - 1);
+
+    return value;
+  }
+
+  private void clear() {
+    emit(clearCode);
+
+    Arrays.fill(entries, EMPTY);
+    nextCode = clearCode + 2;
+  }
+
+  private void emit(int code) {
+    if (code == clearCode) {
+      writer.write(code, codeSize);
+
+      codeSize = minimumCodeSize + 1;
+      decoderCodeCount = clearCode + 2;
+      isFirstCodeAfterClear = true;
+      return;
+    }
+
+    writer.write(code, codeSize);
+
+    // mirrors Decoder.next(), which only adds a code once it has a previous one
+    if (isFirstCodeAfterClear) {
+      isFirstCodeAfterClear = false;
+      return;
+    }
+
+    var isLastCodeForCurrentSize = decoderCodeCount == (1 << codeSize) - 1;
+    if (isLastCodeForCurrentSize && codeSize == Lzw.MAXIMUM_CODE_SIZE)
+      return;
+
+    decoderCodeCount++;
+    if (isLastCodeForCurrentSize)
+      codeSize++;
+  }
+}
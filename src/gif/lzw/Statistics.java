@@ -0,0 +1,71 @@
+package gif.lzw;
+
+/*
+ *  counters describing the image data of one image, or of several added together
+ *
+ *  filled in by a Decoder that's been given one, not thread-safe
+ */
+public class Statistics {
+  private long imageCount      = 0;
+  private long codesRead       = 0;  // including clear and end of information codes
+  private long clearCodes      = 0;
+  private long tableFills      = 0;  // times the code table reached its maximum size
+  private int  longestString   = 0;  // longest string added to the code table
+  private long compressedBytes = 0;  // image data without the sub-block sizes
+  private long decodedBytes    = 0;  // one per pixel
+  private long subBlockCount   = 0;
+
+  public long imageCount()      { return imageCount;      }
+  public long codesRead()       { return codesRead;       }
+  public long clearCodes()      { return clearCodes;      }
+  public long tableFills()      { return tableFills;      }
+  public int  longestString()   { return longestString;   }
+  public long compressedBytes() { return compressedBytes; }
+  public long decodedBytes()    { return decodedBytes;    }
+  public long subBlockCount()   { return subBlockCount;   }
+
+  // decoded bytes per compressed byte
+  public double compressionRatio() {
+    return compressedBytes == 0 ? 0 : (double)decodedBytes / compressedBytes;
+  }
+
+  public Statistics add(Statistics other) {
+    imageCount      += other.imageCount;
+    codesRead       += other.codesRead;
+    clearCodes      += other.clearCodes;
+    tableFills      += other.tableFills;
+    longestString    = Math.max(longestString, other.longestString);
+    compressedBytes += other.compressedBytes;
+    decodedBytes    += other.decodedBytes;
+    subBlockCount   += other.subBlockCount;
+
+    return this;
+  }
+
+  // called by Decoder at the end of every run of codes between clear codes
+  void addSegment(long codesRead, boolean endedWithClearCode, boolean filledTable, int longestString) {
+    this.codesRead += codesRead;
+    if (endedWithClearCode)
+      clearCodes++;
+
+    if (filledTable)
+      tableFills++;
+
+    this.longestString = Math.max(this.longestString, longestString);
+  }
+
+  // called by Decoder once an image is done
+  void addImage(long compressedBytes, long decodedBytes, long subBlockCount) {
+    imageCount++;
+    this.compressedBytes += compressedBytes;
+    this.decodedBytes    += decodedBytes;
+    this.subBlockCount   += subBlockCount;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+      "Statistics[imageCount=%d, codesRead=%d, clearCodes=%d, tableFills=%d, longestString=%d, compressedBytes=%d, decodedBytes=%d, compressionRatio=%.2f, subBlockCount=%d]",
+      imageCount, codesRead, clearCodes, tableFills, longestString, compressedBytes, decodedBytes, compressionRatio(), subBlockCount);
+  }
+}
@@ -0,0 +1,153 @@
+package gif.quantize;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import gif.data.ColorTable;
+
+/*
+ *  colors picked by a Quantizer, and the mapping of pixels onto them
+ *
+ *  pixels are mapped by walking the quantizer's tree down to the leaf they fall in, colors that
+ *  never went into the tree (dithered ones, or ones from other images) are mapped to the nearest
+ *  color instead, which is looked up once per 5-bit cell and remembered
+ *
+ *  thread-safe, so a palette can be shared between the threads mapping the frames of a file
+ */
+public final class Palette {
+  // 8x8 Bayer matrix, thresholds from 0 to 63
+  private static final int[] BAYER = {
+     0, 32,  8, 40,  2, 34, 10, 42,
+    48, 16, 56, 24, 50, 18, 58, 26,
+    12, 44,  4, 36, 14, 46,  6, 38,
+    60, 28, 52, 20, 62, 30, 54, 22,
+     3, 35, 11, 43,  1, 33,  9, 41,
+    51, 19, 59, 27, 49, 17, 57, 25,
+    15, 47,  7, 39, 13, 45,  5, 37,
+    63, 31, 55, 23, 61, 29, 53, 21,
+  };
+
+  private final Quantizer.Node root;
+  private final int[] rgb;  // without the transparent color and padding
+  private final int transparentColorIndex;
+  private final ColorTable colorTable;
+  private final int ditherSpread;
+
+  // nearest color of each 5-bit cell plus one, 0 until it's looked up (racing threads find the same one)
+  private final short[] nearest = new short[1 << 15];
+
+  Palette(Quantizer.Node root, int[] rgb, boolean hasTransparency) {
+    this.root = root;
+    this.rgb  = rgb;
+    this.transparentColorIndex = hasTransparency ? rgb.length : -1;
+
+    // color tables hold at least 2 colors and always a power of 2
+    var size = Math.max(2, Integer.highestOneBit(Math.max(1, rgb.length + (hasTransparency ? 1 : 0)) * 2 - 1));
+    colorTable = ColorTable.of(Arrays.copyOf(rgb, size), false);
+
+    // about half the distance between neighbouring colors, if they were spread out evenly
+    ditherSpread = (int)Math.round(128 / Math.max(1, Math.cbrt(rgb.length)));
+  }
+
+  public ColorTable colorTable() { return colorTable; }
+
+  // -1 if there's none, transparent pixels are then given the nearest color as if they were opaque
+  public int transparentColorIndex() { return transparentColorIndex; }
+
+  // smallest the LZW encoder allows for the color table
+  public int minimumCodeSize() {
+    return Math.max(2, colorTable.packedSize() + 1);
+  }
+
+  /*
+   *  writes the color table index of every pixel of an image to indices
+   *  with dithers, colors the palette doesn't have exactly get ordered dithering
+   */
+  public void map(int[] argb, int width, boolean dithers, byte[] indices) {
+    Objects.checkFromIndexSize(0, argb.length, indices.length);
+    if (width <= 0 || argb.length % width != 0)
+      throw new IllegalArgumentException("pixel count " + argb.length + " isn't a multiple of width " + width);
+
+    for (var i=0; i < argb.length; ++i) {
+      var color = argb[i];
+      if (color >>> 31 == 0 && transparentColorIndex >= 0) {
+        indices[i] = (byte)transparentColorIndex;
+        continue;
+      }
+
+      var red   = (color >> 16) & 0xff;
+      var green = (color >>  8) & 0xff;
+      var blue  = (color >>  0) & 0xff;
+
+      // colors that made it into the palette as they are don't need dithering
+      var index = dithers ? exactIndex(red, green, blue) : -1;
+      if (index < 0) {
+        if (dithers) {
+          var x = i % width;
+          var y = i / width;
+          var offset = ((2 * BAYER[(y & 7) << 3 | (x & 7)] + 1) * ditherSpread >> 7) - (ditherSpread >> 1);
+          red   = Math.clamp(red   + offset, 0, 255);
+          green = Math.clamp(green + offset, 0, 255);
+          blue  = Math.clamp(blue  + offset, 0, 255);
+        }
+
+        index = index(red, green, blue);
+      }
+
+      indices[i] = (byte)index;
+    }
+  }
+
+  // -1 unless the color is one of the palette's own
+  private int exactIndex(int red, int green, int blue) {
+    var node = root;
+    while (node != null && node.children != null)
+      node = node.children[Quantizer.childIndex(red, green, blue, node.level)];
+
+    return node != null && node.level == Quantizer.DEPTH ? node.index : -1;
+  }
+
+  private int index(int red, int green, int blue) {
+    var node = root;
+    while (node.children != null) {
+      node = node.children[Quantizer.childIndex(red, green, blue, node.level)];
+      if (node == null)
+        return nearest(red, green, blue);
+    }
+
+    return node.index >= 0 ? node.index : nearest(red, green, blue);
+  }
+
+  private int nearest(int red, int green, int blue) {
+    if (rgb.length == 0)
+      return 0;
+
+    var cell = (red >> 3) << 10 | (green >> 3) << 5 | (blue >> 3);
+    var found = nearest[cell];
+    if (found != 0)
+      return found - 1;
+
+    // measured from the middle of the cell
+    red   = (red   & ~7) | 4;
+    green = (green & ~7) | 4;
+    blue  = (blue  & ~7) | 4;
+
+    var best = 0;
+    var bestDistance = Integer.MAX_VALUE;
+    for (var i=0; i < rgb.length; ++i) {
+      var dr = ((rgb[i] >> 16) & 0xff) - red;
+      var dg = ((rgb[i] >>  8) & 0xff) - green;
+      var db = ((rgb[i] >>  0) & 0xff) - blue;
+
+      // weighted roughly by how much each channel adds to brightness
+      var distance = 3 * dr * dr + 4 * dg * dg + 2 * db * db;
+      if (distance < bestDistance) {
+        best = i;
+        bestDistance = distance;
+      }
+    }
+
+    nearest[cell] = (short)(best + 1);
+    return best;
+  }
+}
@@ -0,0 +1,197 @@
+package gif.quantize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ *  octree color quantizer, picks up to a color table's worth of colors for a set of ARGB pixels
+ *
+ *  every opaque pixel added goes down the tree a bit of red, green and blue per level and is
+ *  summed into the leaf it ends at, so leaves at the bottom are exact colors
+ *  whenever there are more leaves than colors wanted, the deepest node with the fewest pixels
+ *  under it is folded into a single leaf, so the tree stays small whatever the number of colors
+ *
+ *  pixels with alpha under half are transparent, and get a color table entry of their own
+ *
+ *  not thread-safe, but the palettes it builds are
+ */
+public final class Quantizer {
+  public static final int MAXIMUM_COLORS = 256;
+  static final int DEPTH = 8;
+
+  static final class Node {
+    final int level;
+    Node[] children;  // null for leaves
+    long count;       // pixels under the node
+    long redSum, greenSum, blueSum;  // only summed in leaves
+    int index = -1;   // color table index of a leaf, once the palette is built
+
+    Node(int level) {
+      this.level    = level;
+      this.children = level < DEPTH ? new Node[8] : null;
+    }
+  }
+
+  private final Node root = new Node(0);
+
+  // nodes with children on each level, the candidates for folding
+  private final List<List<Node>> reducible = new ArrayList<>();
+
+  private int leafCount = 0;
+  private boolean hasTransparency = false;
+
+  // runs of the same color skip the walk down the tree
+  private int lastColor = -1;
+  private Node lastLeaf = null;
+
+  public Quantizer() {
+    for (var level=0; level < DEPTH; ++level)
+      reducible.add(new ArrayList<>());
+
+    reducible.get(0).add(root);
+  }
+
+  // makes sure the palette has a transparent color index, even if no transparent pixels were added
+  public void reserveTransparentColorIndex() {
+    hasTransparency = true;
+  }
+
+  public void add(int[] argb) {
+    add(argb, 1);
+  }
+
+  // only looks at every step-th pixel, which is plenty for picking colors from large images
+  public void add(int[] argb, int step) {
+    if (step < 1)
+      throw new IllegalArgumentException("step must be positive (got " + step + ")");
+
+    for (var i=0; i < argb.length; i += step) {
+      var color = argb[i];
+      if (color >>> 31 == 0) {  // alpha under half
+        hasTransparency = true;
+        continue;
+      }
+
+      add(color & 0xffffff);
+    }
+  }
+
+  private void add(int rgb) {
+    var leaf = rgb == lastColor ? lastLeaf : null;
+    if (leaf == null) {
+      var red   = (rgb >> 16) & 0xff;
+      var green = (rgb >>  8) & 0xff;
+      var blue  = (rgb >>  0) & 0xff;
+
+      leaf = root;
+      while (leaf.children != null) {
+        leaf.count++;
+
+        var child = childIndex(red, green, blue, leaf.level);
+        var next = leaf.children[child];
+        if (next == null) {
+          next = leaf.children[child] = new Node(leaf.level + 1);
+          if (next.children != null) {
+            reducible.get(next.level).add(next);
+          } else {
+            leafCount++;
+          }
+        }
+
+        leaf = next;
+      }
+
+      lastColor = rgb;
+      lastLeaf  = leaf;
+    }
+
+    leaf.count++;
+    leaf.redSum   += (rgb >> 16) & 0xff;
+    leaf.greenSum += (rgb >>  8) & 0xff;
+    leaf.blueSum  += (rgb >>  0) & 0xff;
+
+    if (leafCount > MAXIMUM_COLORS - (hasTransparency ? 1 : 0))
+      reduce();
+  }
+
+  // folds the deepest node with the fewest pixels under it into a leaf
+  private void reduce() {
+    var level = DEPTH - 1;
+    while (reducible.get(level).isEmpty())
+      level--;
+
+    var nodes = reducible.get(level);
+    var fewest = 0;
+    for (var i=1; i < nodes.size(); ++i) {
+      if (nodes.get(i).count < nodes.get(fewest).count)
+        fewest = i;
+    }
+
+    var node = nodes.get(fewest);
+    nodes.set(fewest, nodes.getLast());
+    nodes.removeLast();
+
+    // nothing is deeper than this level, so every child is a leaf
+    // (only leaves count every pixel, runs of a color don't go through the nodes above)
+    var childCount = 0;
+    node.count = 0;
+    for (var child : node.children) {
+      if (child == null)
+        continue;
+
+      node.count    += child.count;
+      node.redSum   += child.redSum;
+      node.greenSum += child.greenSum;
+      node.blueSum  += child.blueSum;
+      childCount++;
+    }
+
+    node.children = null;
+    leafCount -= childCount - 1;
+    lastLeaf = null;
+  }
+
+  /*
+   *  the colors picked from everything added so far, the quantizer can't be used afterwards
+   *  with a transparent color index if any pixel added was transparent (or one was reserved)
+   */
+  public Palette palette() {
+    while (leafCount > MAXIMUM_COLORS - (hasTransparency ? 1 : 0))
+      reduce();
+
+    var leaves = new ArrayList<Node>();
+    collectLeaves(root, leaves);
+
+    var rgb = new int[leaves.size()];
+    for (var i=0; i < rgb.length; ++i) {
+      var leaf = leaves.get(i);
+      leaf.index = i;
+      rgb[i] = (int)(leaf.redSum   / leaf.count) << 16
+             | (int)(leaf.greenSum / leaf.count) <<  8
+             | (int)(leaf.blueSum  / leaf.count) <<  0;
+    }
+
+    return new Palette(root, rgb, hasTransparency);
+  }
+
+  private static void collectLeaves(Node node, List<Node> leaves) {
+    if (node.children == null) {
+      if (node.count > 0)
+        leaves.add(node);
+
+      return;
+    }
+
+    for (var child : node.children) {
+      if (child != null)
+        collectLeaves(child, leaves);
+    }
+  }
+
+  static int childIndex(int red, int green, int blue, int level) {
+    var shift = 7 - level;
+    return ((red   >> shift) & 1) << 2
+         | ((green >> shift) & 1) << 1
+         | ((blue  >> shift) & 1) << 0;
+  }
+}
@@ -0,0 +1,271 @@
+package main;
+
+import java.nio.IntBuffer;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Slider;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.StackPane;
+import javafx.util.Duration;
+
+import gif.Compositor;
+import gif.FrameCache;
+import gif.FrameIndex;
+import gif.block.Extension;
+import gif.block.LabeledBlock;
+import gif.data.DisposalMethod;
+import gif.data.Unsigned;
+
+/*
+ *  shows the frames of a file, with a slider to scrub through them and a button to play them
+ *
+ *  frames are composited on a background thread and copied onto the FX thread in one go, into
+ *  the array a PixelBuffer wraps, so nothing is drawn a pixel at a time and the FX thread never
+ *  decodes anything
+ *
+ *  opening a file only skims it (see FrameIndex), images are decoded ahead of the frame being
+ *  composited into a cache shared by every view, and the compositor is snapshotted every so
+ *  often so going back doesn't mean starting over from the first frame
+ *
+ *  scrubbing faster than frames can be composited skips to the latest frame asked for
+ */
+final class FrameView extends BorderPane {
+  private static final FrameCache cache = new FrameCache(256L << 20);
+
+  private static final long SNAPSHOT_BUDGET = 256L << 20;
+  private static final int MINIMUM_SNAPSHOT_INTERVAL = 16;
+  private static final int PREFETCH_COUNT = 8;
+
+  // like browsers, delays of 0 and 10 ms are played as 100 ms
+  private static final int MINIMUM_DELAY = 2;
+  private static final int DEFAULT_DELAY = 10;
+
+  private final FrameIndex index;
+
+  // the compositor and snapshots are only touched on the render thread
+  private final ExecutorService renderer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("gif-render").daemon().factory());
+  private final ExecutorService decoders = Executors.newFixedThreadPool(
+    Math.max(1, Runtime.getRuntime().availableProcessors() - 1), Thread.ofPlatform().name("gif-decode-", 0).daemon().factory());
+  private final Compositor compositor;
+  private final TreeMap<Integer, Compositor.Snapshot> snapshots = new TreeMap<>();
+  private final int snapshotInterval;
+  private int prefetchedUpTo = -1;
+
+  private final AtomicInteger requestedFrame = new AtomicInteger(-1);
+  private final AtomicBoolean isRendering = new AtomicBoolean(false);
+
+  // only touched on the FX thread
+  private final Optional<PixelBuffer<IntBuffer>> pixelBuffer;  // empty if the screen has no area
+  private final Slider slider = new Slider();
+  private final Label info = new Label();
+  private final Button play = new Button("Play");
+  private final PauseTransition delay = new PauseTransition();
+  private boolean isPlaying = false;
+
+  FrameView(FrameIndex index) {
+    this.index = index;
+    this.compositor = new Compositor(index);
+    compositor.useCache(Optional.of(cache));
+
+    var width  = index.screen.width ().intValue();
+    var height = index.screen.height().intValue();
+
+    // bounds the memory the snapshots take up, a snapshot is up to two canvases
+    var snapshotSize = Math.max(1, 8L * width * height);
+    snapshotInterval = (int)Math.max(MINIMUM_SNAPSHOT_INTERVAL, snapshotSize * index.frameCount() / SNAPSHOT_BUDGET + 1);
+    snapshots.put(-1, compositor.snapshot());
+
+    var view = new ImageView();
+    view.setSmooth(false);
+    if (width > 0 && height > 0) {
+      // the canvas only has fully opaque and fully transparent (all zero) pixels, which are the same premultiplied
+      // the compositor already checked the canvas fits in an array, so its length is the pixel count
+      var buffer = new PixelBuffer<>(width, height, IntBuffer.allocate(compositor.canvas().length), PixelFormat.getIntArgbPreInstance());
+      view.setImage(new WritableImage(buffer));
+      pixelBuffer = Optional.of(buffer);
+    } else {
+      pixelBuffer = Optional.empty();
+    }
+
+    var scrollPane = new ScrollPane(new StackPane(view));
+    scrollPane.setFitToWidth(true);
+    scrollPane.setFitToHeight(true);
+    setCenter(scrollPane);
+
+    slider.setMin(0);
+    slider.setMax(Math.max(0, index.frameCount() - 1));
+    slider.setBlockIncrement(1);
+    slider.setMajorTickUnit(1);
+    slider.setMinorTickCount(0);
+    slider.setSnapToTicks(true);
+    slider.setDisable(index.frameCount() < 2);
+    slider.valueProperty().addListener((observable, oldValue, newValue) -> requestFrame(newValue.intValue()));
+    HBox.setHgrow(slider, Priority.ALWAYS);
+
+    play.setDisable(index.frameCount() < 2);
+    play.setOnAction(event -> setPlaying(!isPlaying));
+
+    delay.setOnFinished(event -> {
+      if (isPlaying)
+        slider.setValue(((int)slider.getValue() + 1) % index.frameCount());
+    });
+
+    var controls = new HBox(8, play, slider, info);
+    controls.setAlignment(Pos.CENTER_LEFT);
+    controls.setPadding(new Insets(8));
+    setBottom(controls);
+
+    if (index.frameCount() == 0) {
+      info.setText("no frames");
+    } else {
+      requestFrame(0);
+    }
+  }
+
+  // stops the background threads, the view can't be used afterwards
+  void close() {
+    setPlaying(false);
+    renderer.shutdownNow();
+    decoders.shutdownNow();
+  }
+
+  private void setPlaying(boolean isPlaying) {
+    this.isPlaying = isPlaying;
+    play.setText(isPlaying ? "Pause" : "Play");
+
+    if (isPlaying) {
+      slider.setValue(((int)slider.getValue() + 1) % index.frameCount());
+    } else {
+      delay.stop();
+    }
+  }
+
+  private void requestFrame(int frameIndex) {
+    requestedFrame.set(frameIndex);
+    if (isRendering.compareAndSet(false, true))
+      renderer.execute(this::renderRequested);
+  }
+
+  // runs on the render thread until it has caught up with the latest frame asked for
+  private void renderRequested() {
+    while (true) {
+      var frameIndex = requestedFrame.get();
+      try {
+        renderTo(frameIndex);
+        show(frameIndex);
+      } catch (InterruptedException e) {
+        return;  // closed
+      } catch (Exception e) {  // ParseException included
+        Platform.runLater(() -> {
+          setPlaying(false);
+          info.setText("frame " + (frameIndex + 1) + ": " + e.getMessage());
+        });
+
+        // the frame was left half composited, so start over from the first one
+        compositor.restore(snapshots.floorEntry(-1).getValue());
+      }
+
+      isRendering.set(false);
+      if (requestedFrame.get() == frameIndex || !isRendering.compareAndSet(false, true))
+        return;
+    }
+  }
+
+  private void renderTo(int frameIndex) throws Exception {
+    var current = compositor.frameIndex();
+    var snapshot = snapshots.floorEntry(frameIndex).getValue();
+    if (current > frameIndex || snapshot.frameIndex() > current)
+      compositor.restore(snapshot);
+
+    while (compositor.frameIndex() < frameIndex) {
+      prefetch(compositor.frameIndex() + 1);
+      compositor.nextFrame();
+
+      var composited = compositor.frameIndex();
+      if ((composited + 1) % snapshotInterval == 0)
+        snapshots.putIfAbsent(composited, compositor.snapshot());
+    }
+  }
+
+  // decodes the next few images into the cache while the compositor works through the ones before them
+  private void prefetch(int frameIndex) {
+    prefetchedUpTo = Math.max(prefetchedUpTo, frameIndex);  // the compositor decodes this one itself if needed
+
+    var end = Math.min(index.frameCount() - 1, frameIndex + PREFETCH_COUNT);
+    for (; prefetchedUpTo < end; ++prefetchedUpTo) {
+      var next = prefetchedUpTo + 1;
+      decoders.execute(() -> {
+        try {
+          cache.indices(index.image(next));
+        } catch (Exception e) {
+          // reported when the compositor gets to it
+        }
+      });
+    }
+  }
+
+  // copies the canvas into the pixel buffer on the FX thread, waiting for it so the canvas isn't changed meanwhile
+  private void show(int frameIndex) throws InterruptedException {
+    var shown = new CountDownLatch(1);
+    var image = compositor.image();
+    Platform.runLater(() -> {
+      try {
+        pixelBuffer.ifPresent(buffer -> buffer.updateBuffer(updated -> {
+          System.arraycopy(compositor.canvas(), 0, updated.getBuffer().array(), 0, compositor.canvas().length);
+          return null;  // the whole buffer
+        }));
+      } finally {
+        shown.countDown();
+      }
+
+      showInfo(frameIndex, image);
+      if (isPlaying) {
+        delay.setDuration(Duration.millis(10 * delay(image)));
+        delay.playFromStart();
+      }
+    });
+
+    shown.await();
+  }
+
+  private void showInfo(int frameIndex, LabeledBlock.Image image) {
+    var disposalMethod = image.graphicControlExtension()
+      .map(Extension.GraphicControlExtension::disposalMethod)
+      .orElse(DisposalMethod.UNSPECIFIED);
+
+    info.setText(String.format(
+      "frame %d/%d  %dx%d at (%d, %d)  %d ms  %s%s",
+      frameIndex + 1, index.frameCount(),
+      image.width().intValue(), image.height().intValue(), image.left().intValue(), image.top().intValue(),
+      10 * delay(image), disposalMethod, image.isInterlaced() ? "  interlaced" : ""));
+  }
+
+  // in hundredths of a second
+  private static int delay(LabeledBlock.Image image) {
+    var delay = image.graphicControlExtension()
+      .map(Extension.GraphicControlExtension::delayTime)
+      .map(Unsigned.Short::intValue)
+      .orElse(0);
+
+    return delay < MINIMUM_DELAY ? DEFAULT_DELAY : delay;
+  }
+}
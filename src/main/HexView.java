@@ -0,0 +1,131 @@
+package main;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.BorderPane;
+
+import gif.BlockMap;
+import gif.data.format.HexDump;
+
+/*
+ *  hex dump of a file, with every row that a structure starts on annotated with it
+ *
+ *  the list only has cells for the rows on screen, and a row is read and formatted when a cell
+ *  is given it, so opening a file doesn't read more than a page of it whatever its size
+ *
+ *  the structures are found by skimming the file on a background thread, rows are annotated
+ *  as the skim gets to them
+ */
+final class HexView extends BorderPane {
+  private static final long SKIM_CHUNK_SIZE = 1L << 20;
+  private static final long REFRESH_INTERVAL = 250_000_000;  // ns
+
+  private final FileChannel channel;
+  private final InputStream stream;  // skimmed by blocks
+  private final HexDump dump;
+  private final BlockMap blocks;
+  private final ListView<Long> rows = new ListView<>();
+
+  private final ExecutorService skimmer = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("gif-skim").daemon().factory());
+
+  HexView(Path path) throws IOException {
+    channel = FileChannel.open(path);
+    try {
+      dump = new HexDump(channel);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    stream = Files.newInputStream(path);
+    blocks = new BlockMap(stream);
+
+    // rows past the last the list can index aren't shown (files over 32GB)
+    var rowCount = (int)Math.min(Integer.MAX_VALUE, dump.rowCount());
+    rows.setItems(FXCollections.observableList(new AbstractList<Long>() {
+      @Override
+      public Long get(int index) { return (long)index; }
+
+      @Override
+      public int size() { return rowCount; }
+    }));
+
+    rows.setFixedCellSize(20);
+    rows.setStyle("-fx-font-family: monospace;");
+    rows.setCellFactory(list -> new RowCell());
+    setCenter(rows);
+
+    skimmer.execute(this::skim);
+  }
+
+  // stops skimming and closes the file, the view can't be used afterwards
+  void close() {
+    skimmer.shutdownNow();
+    try (stream; channel) {
+      // closed
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // runs on the skimmer thread, refreshing the rows shown every so often as annotations come in
+  private void skim() {
+    var lastRefresh = System.nanoTime();
+    try {
+      while (!blocks.isComplete() && !Thread.currentThread().isInterrupted()) {
+        blocks.skimTo(blocks.skimmedTo() + SKIM_CHUNK_SIZE);
+
+        if (System.nanoTime() - lastRefresh > REFRESH_INTERVAL || blocks.isComplete()) {
+          lastRefresh = System.nanoTime();
+          Platform.runLater(rows::refresh);
+        }
+      }
+    } catch (IOException e) {
+      if (!skimmer.isShutdown())
+        e.printStackTrace();  // the rows skimmed so far stay annotated
+    }
+  }
+
+  private final class RowCell extends ListCell<Long> {
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    protected void updateItem(Long row, boolean isEmpty) {
+      super.updateItem(row, isEmpty);
+      if (isEmpty || row == null) {
+        setText(null);
+        return;
+      }
+
+      text.setLength(0);
+      try {
+        dump.formatRow(text, row);
+      } catch (IOException e) {
+        setText(e.getMessage());
+        return;
+      }
+
+      var start = row * HexDump.ROW_SIZE;
+      var separator = "  ";
+      for (var region : blocks.knownRegions(start, start + HexDump.ROW_SIZE)) {
+        if (region.offset() >= start) {
+          text.append(separator).append(region.description());
+          separator = ", ";
+        }
+      }
+
+      setText(text.toString());
+    }
+  }
+}
@@ -1,24 +1,30 @@
 package main;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ByteArrayOutputStream;
 import java.util.Optional;
 
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.Label;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
-import gif.Gif;
-import gif.data.format.ByteArrayFormatter;
+import gif.FrameIndex;
 
 public class Main extends Application {
+  private static final int MINIMUM_WIDTH  = 480;
+  private static final int MINIMUM_HEIGHT = 240;
+  private static final int MAXIMUM_WIDTH  = 1280;
+  private static final int MAXIMUM_HEIGHT = 960;
+
   private File promptForFile(Stage stage, String title) {
     var fileChooser = new FileChooser();
     fileChooser.setTitle(title);
@@ -65,37 +71,49 @@ public class Main extends Application {
 
       stage.setTitle(file.getName());
 
-      try (var stream = new FileInputStream(file)) {
-        try {
-          var gif = new Gif(stream);
+      HexView hexView;
+      try {
+        hexView = new HexView(file.toPath());
+      } catch (IOException e) {
+        e.printStackTrace();
+        showWarningDialog(stage, "Could not open file: " + e.getMessage());
+        continue;
+      }
 
-          System.out.println(gif.screen.width());
-          System.out.println(gif.screen.height());
+      // files that can't be indexed (or are too large to map) can still be looked through in the hex view
+      Node frames;
+      var width  = MINIMUM_WIDTH;
+      var height = MINIMUM_HEIGHT;
+      try {
+        // only skims the file, images are parsed as they're shown
+        var index = FrameIndex.open(file.toPath());
+        var frameView = new FrameView(index);
+        stage.setOnHidden(event -> {
+          frameView.close();
+          hexView.close();
+        });
+
+        frames = frameView;
+        width  = index.screen.width ().intValue() + 32;
+        height = index.screen.height().intValue() + 128;
+      } catch (Exception e) {  // ParseException included
+        e.printStackTrace();
+        stage.setOnHidden(event -> hexView.close());
 
-          var output = new ByteArrayOutputStream();
-          gif.writeTo(output);
-          System.out.println(ByteArrayFormatter.format(output.toByteArray()));
-          System.out.flush();
-        } catch (Exception e) {
-          e.printStackTrace();
+        frames = new Label("Could not process file: " + e.getMessage());
+      }
 
-          var result = showWarningDialog(stage, "Could not process file: " + e.getMessage());
-          if (result.isPresent() && result.get() == ButtonType.CLOSE) {
-            Platform.exit();
-            return;
-          }
+      var tabs = new TabPane(new Tab("Frames", frames), new Tab("Hex", hexView));
+      tabs.setTabClosingPolicy(TabPane.TabClosingPolicy.UNAVAILABLE);
+      if (frames instanceof Label)
+        tabs.getSelectionModel().selectLast();
 
-          continue;
-        }
+      stage.setScene(new Scene(
+        tabs,
+        Math.clamp(width,  MINIMUM_WIDTH,  MAXIMUM_WIDTH ),
+        Math.clamp(height, MINIMUM_HEIGHT, MAXIMUM_HEIGHT)));
 
-        return;
-      } catch (FileNotFoundException e) {
-        e.printStackTrace();
-        showWarningDialog(stage, "Could not open file: " + e.getMessage());
-      } catch (IOException e) {
-        e.printStackTrace();
-        return;  // ignore exceptions on stream close
-      }
+      return;
     }
   }
 